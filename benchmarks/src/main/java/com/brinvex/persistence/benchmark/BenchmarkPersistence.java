@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.benchmark;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.io.Serial;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Creates the entity manager factories of the benchmarks.
+ */
+final class BenchmarkPersistence {
+
+    private static final String PERSISTENCE_UNIT = "brinvex-persistence-benchmark";
+
+    private BenchmarkPersistence() {
+    }
+
+    /**
+     * An entity manager factory which never connects to the database.
+     * Queries are translated to SQL, but {@link #renderSql(TypedQuery)} aborts them before a statement is prepared.
+     */
+    static EntityManagerFactory createOffline() {
+        return Persistence.createEntityManagerFactory(PERSISTENCE_UNIT, Map.of(
+                "hibernate.dialect", PostgreSQLDialect.class.getName(),
+                "hibernate.boot.allow_jdbc_metadata_access", "false",
+                "hibernate.connection.provider_class", new NoConnectionProvider(),
+                "hibernate.session_factory.statement_inspector", (StatementInspector) sql -> {
+                    throw new RenderedSql(sql);
+                },
+                "jakarta.persistence.schema-generation.database.action", "none"
+        ));
+    }
+
+    /**
+     * An entity manager factory connected to the PostgreSQL database of {@code docker/bx-persistence-postgres},
+     * or to the one given by the {@code benchmark.jdbc.url} system property.
+     */
+    static EntityManagerFactory createPostgres() {
+        return Persistence.createEntityManagerFactory(PERSISTENCE_UNIT, Map.of(
+                "jakarta.persistence.jdbc.url", System.getProperty(
+                        "benchmark.jdbc.url", "jdbc:postgresql://localhost:15432/brinvex_persistence_test"),
+                "jakarta.persistence.schema-generation.database.action", "drop-and-create"
+        ));
+    }
+
+    /**
+     * Returns the SQL a query of an {@link #createOffline()} factory is translated to.
+     */
+    static String renderSql(TypedQuery<?> query) {
+        try {
+            query.getResultList();
+        } catch (RuntimeException e) {
+            for (Throwable t = e; t != null; t = t.getCause()) {
+                if (t instanceof RenderedSql renderedSql) {
+                    return renderedSql.getMessage();
+                }
+            }
+            throw e;
+        }
+        throw new IllegalStateException("Expecting the query to be aborted by the statement inspector");
+    }
+
+    private static final class RenderedSql extends RuntimeException {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private RenderedSql(String sql) {
+            super(sql, null, false, false);
+        }
+    }
+
+    private static final class NoConnectionProvider implements ConnectionProvider {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            throw new SQLException("The offline benchmark factory has no database");
+        }
+
+        @Override
+        public void closeConnection(Connection connection) {
+        }
+
+        @Override
+        public boolean supportsAggressiveRelease() {
+            return false;
+        }
+
+        @Override
+        public boolean isUnwrappableAs(Class<?> unwrapType) {
+            return false;
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> unwrapType) {
+            throw new IllegalArgumentException("Illegal unwrapType: " + unwrapType);
+        }
+    }
+}
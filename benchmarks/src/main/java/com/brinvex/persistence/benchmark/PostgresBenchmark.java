@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.benchmark;
+
+import com.brinvex.persistence.api.BatchWriteStats;
+import com.brinvex.persistence.api.GeneralDao;
+import com.brinvex.persistence.benchmark.dm.Employee;
+import com.brinvex.persistence.benchmark.dm.Salary;
+import com.brinvex.persistence.benchmark.dm.Salary_;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Runs against a local PostgreSQL, see {@link BenchmarkPersistence#createPostgres()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostgresBenchmark {
+
+    private static final LocalDate SEED_DATE = LocalDate.parse("2023-01-31");
+
+    private static final LocalDate PERSISTED_DATE = LocalDate.parse("2024-01-31");
+
+    @Param({"10", "100", "1000"})
+    public int batchSize;
+
+    private EntityManagerFactory emf;
+
+    private Employee employee;
+
+    private List<Long> ids;
+
+    @Setup
+    public void setUp() {
+        emf = BenchmarkPersistence.createPostgres();
+        employee = inTx(em -> {
+            Employee e = new Employee();
+            e.setName("Alice");
+            em.persist(e);
+            return e;
+        });
+        List<Salary> salaries = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            salaries.add(new Salary(employee, SEED_DATE, BigDecimal.valueOf(i)));
+        }
+        inTx(em -> GeneralDao.INSTANCE.persistAll(em, salaries, batchSize));
+        ids = salaries.stream().map(Salary::getId).toList();
+    }
+
+    @TearDown(Level.Iteration)
+    public void deletePersisted() {
+        inTx(em -> em.createQuery("delete from Salary s where s.date = :date")
+                .setParameter("date", PERSISTED_DATE)
+                .executeUpdate());
+    }
+
+    @TearDown
+    public void tearDown() {
+        emf.close();
+    }
+
+    @Benchmark
+    public List<Salary> findByIds() {
+        try (EntityManager em = emf.createEntityManager()) {
+            return GeneralDao.INSTANCE.findByIds(em, Salary.class, ids, Salary_.id);
+        }
+    }
+
+    @Benchmark
+    public BatchWriteStats persistAll() {
+        List<Salary> salaries = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            salaries.add(new Salary(employee, PERSISTED_DATE, BigDecimal.valueOf(i)));
+        }
+        return inTx(em -> GeneralDao.INSTANCE.persistAll(em, salaries, batchSize));
+    }
+
+    private <R> R inTx(Function<EntityManager, R> work) {
+        try (EntityManager em = emf.createEntityManager()) {
+            EntityTransaction tx = em.getTransaction();
+            try {
+                tx.begin();
+                R result = work.apply(em);
+                tx.commit();
+                return result;
+            } catch (RuntimeException e) {
+                if (tx.isActive()) {
+                    tx.rollback();
+                }
+                throw e;
+            }
+        }
+    }
+}
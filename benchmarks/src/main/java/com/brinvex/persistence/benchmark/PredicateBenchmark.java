@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.benchmark;
+
+import com.brinvex.persistence.api.Filter;
+import com.brinvex.persistence.api.GeneralDao;
+import com.brinvex.persistence.benchmark.dm.Employee;
+import com.brinvex.persistence.benchmark.dm.Employee_;
+import com.brinvex.persistence.benchmark.dm.Salary;
+import com.brinvex.persistence.benchmark.dm.Salary_;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredicateBenchmark {
+
+    private final Filter amountFilter = Filter.biggerThan(new BigDecimal("150"));
+
+    private final LocalDate testDate = LocalDate.parse("2023-06-15");
+
+    private EntityManagerFactory emf;
+
+    private EntityManager em;
+
+    private CriteriaBuilder cb;
+
+    private Root<Salary> salaryRoot;
+
+    private Root<Employee> employeeRoot;
+
+    @Setup
+    public void setUp() {
+        emf = BenchmarkPersistence.createOffline();
+        em = emf.createEntityManager();
+        cb = em.getCriteriaBuilder();
+        salaryRoot = cb.createQuery(Salary.class).from(Salary.class);
+        employeeRoot = cb.createQuery(Employee.class).from(Employee.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        em.close();
+        emf.close();
+    }
+
+    @Benchmark
+    public Predicate asPredicate() {
+        return GeneralDao.INSTANCE.asPredicate(cb, salaryRoot.get(Salary_.amount), amountFilter);
+    }
+
+    @Benchmark
+    public Predicate betweenLeftInclRightExcl() {
+        return GeneralDao.INSTANCE.betweenLeftInclRightExcl(
+                cb, employeeRoot.get(Employee_.validFrom), employeeRoot.get(Employee_.validTo), testDate);
+    }
+
+    @Benchmark
+    public CriteriaQuery<Salary> applySelections() {
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        return GeneralDao.INSTANCE.applySelections(cb, q, Salary.class,
+                List.of(r.get(Salary_.id), r.get(Salary_.date), r.get(Salary_.amount)));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.benchmark;
+
+import com.brinvex.persistence.api.Filter;
+import com.brinvex.persistence.api.GeneralDao;
+import com.brinvex.persistence.api.QueryTemplate;
+import com.brinvex.persistence.benchmark.dm.Employee;
+import com.brinvex.persistence.benchmark.dm.Employee_;
+import com.brinvex.persistence.benchmark.dm.Salary;
+import com.brinvex.persistence.benchmark.dm.Salary_;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Root;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds criteria queries shaped like the ones of a typical DAO and translates them to SQL.
+ * Nothing is executed, see {@link BenchmarkPersistence#createOffline()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryTranslationBenchmark {
+
+    private static final QueryTemplate<Salary> FIND_BY_EMPLOYEE_ID = QueryTemplate.of("QueryTranslationBenchmark.findByEmployeeId", cb -> {
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        Join<Salary, Employee> employeeJoin = r.join(Salary_.employee);
+        q.where(cb.equal(employeeJoin.get(Employee_.id), cb.parameter(Long.class, "employeeId")));
+        return q;
+    });
+
+    private final Filter amountFilter = Filter.biggerThan(new BigDecimal("150"));
+
+    private final List<LocalDate> dates = List.of(
+            LocalDate.parse("2023-01-31"), LocalDate.parse("2023-02-28"), LocalDate.parse("2023-03-31"));
+
+    private EntityManagerFactory emf;
+
+    private EntityManager em;
+
+    @Setup
+    public void setUp() {
+        emf = BenchmarkPersistence.createOffline();
+        em = emf.createEntityManager();
+    }
+
+    @TearDown
+    public void tearDown() {
+        em.close();
+        emf.close();
+    }
+
+    @Benchmark
+    public String findByEmployeeId() {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        q.where(cb.equal(r.get(Salary_.employee).get(Employee_.id), 1L));
+        return BenchmarkPersistence.renderSql(em.createQuery(q));
+    }
+
+    /**
+     * The translation of a template is cached in the query plan cache
+     */
+    @Benchmark
+    public String findByEmployeeIdTemplate() {
+        return BenchmarkPersistence.renderSql(GeneralDao.INSTANCE.createQuery(em, FIND_BY_EMPLOYEE_ID, Map.of("employeeId", 1L)));
+    }
+
+    @Benchmark
+    public String findByNumberFilter() {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        Join<Salary, Employee> employeeJoin = GeneralDao.INSTANCE.fetchJoin(r, Salary_.employee);
+        q.where(
+                cb.equal(employeeJoin.get(Employee_.id), 1L),
+                GeneralDao.INSTANCE.asPredicate(cb, r.get(Salary_.amount), amountFilter)
+        );
+        return BenchmarkPersistence.renderSql(em.createQuery(q));
+    }
+
+    @Benchmark
+    public String findByDates() {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        Join<Salary, Employee> employeeJoin = GeneralDao.INSTANCE.fetchJoin(r, Salary_.employee);
+        q.where(
+                cb.equal(employeeJoin.get(Employee_.id), 1L),
+                GeneralDao.INSTANCE.inCollection(cb, r.get(Salary_.date), dates)
+        );
+        return BenchmarkPersistence.renderSql(em.createQuery(q));
+    }
+
+    @Benchmark
+    public String findByIdAsDTO() {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        GeneralDao.INSTANCE.applySelections(cb, q, Salary.class,
+                List.of(r.get(Salary_.id), r.get(Salary_.date), r.get(Salary_.amount)));
+        q.where(cb.equal(r.get(Salary_.id), 1L));
+        return BenchmarkPersistence.renderSql(em.createQuery(q));
+    }
+}
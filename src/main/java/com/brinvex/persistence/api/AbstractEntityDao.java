@@ -25,8 +25,8 @@ import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Selection;
-import jakarta.persistence.metamodel.EntityType;
 import jakarta.persistence.metamodel.SingularAttribute;
+import org.hibernate.query.Order;
 
 import java.io.Serializable;
 import java.time.Duration;
@@ -36,8 +36,10 @@ import java.time.temporal.Temporal;
 import java.time.temporal.TemporalAccessor;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 @SuppressWarnings({"unused", "resource"})
 public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> implements EntityDao<ENTITY, ID> {
@@ -68,7 +70,7 @@ public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> impleme
     ) {
         this.entityType = entityType;
         this.idType = idType;
-        this.generalDao = GeneralDaoImpl.INSTANCE;
+        this.generalDao = Objects.requireNonNull(generalDao, "Expecting non-null generalDao");
     }
 
     protected abstract EntityManager entityManager();
@@ -88,10 +90,13 @@ public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> impleme
         return this.cb;
     }
 
+    protected int defaultBatchSize() {
+        return 50;
+    }
+
     protected SingularAttribute<? super ENTITY, ID> idAttribute() {
         if (idAttribute == null) {
-            EntityType<ENTITY> entityMetamodel = em().getEntityManagerFactory().getMetamodel().entity(entityType);
-            idAttribute = entityMetamodel.getId(idType);
+            idAttribute = generalDao.getEntityMetadata(em(), entityType).idAttribute(idType);
         }
         return idAttribute;
     }
@@ -121,6 +126,41 @@ public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> impleme
         return generalDao.findByIds(em(), entityType, ids, idAttribute());
     }
 
+    @Override
+    public List<ENTITY> findByIds(Collection<ID> ids, QueryReadMode queryReadMode) {
+        return generalDao.findByIds(em(), entityType, ids, idAttribute(), queryReadMode);
+    }
+
+    @Override
+    public List<ENTITY> findByIdsInChunks(Collection<ID> ids, int chunkSize) {
+        return generalDao.findByIdsInChunks(em(), entityType, ids, idAttribute(), chunkSize);
+    }
+
+    @Override
+    public Map<ID, ENTITY> findByIdsAsMap(Collection<ID> ids) {
+        return generalDao.findByIdsAsMap(em(), entityType, ids, ResultOrderMode.UNORDERED);
+    }
+
+    @Override
+    public Map<ID, ENTITY> findByIdsAsMap(Collection<ID> ids, ResultOrderMode resultOrderMode) {
+        return generalDao.findByIdsAsMap(em(), entityType, ids, resultOrderMode);
+    }
+
+    @Override
+    public Map<ID, ENTITY> findByIdsAsMap(Collection<ID> ids, ResultOrderMode resultOrderMode, QueryReadMode queryReadMode) {
+        return generalDao.findByIdsAsMap(em(), entityType, ids, resultOrderMode, queryReadMode);
+    }
+
+    @Override
+    public List<ENTITY> findByIdsInRequestedOrder(List<ID> ids) {
+        return generalDao.findByIdsInRequestedOrder(em(), entityType, ids);
+    }
+
+    @Override
+    public List<ENTITY> findByIdsInRequestedOrder(List<ID> ids, QueryReadMode queryReadMode) {
+        return generalDao.findByIdsInRequestedOrder(em(), entityType, ids, queryReadMode);
+    }
+
     @Override
     public ENTITY findByIdForUpdateSkipLocked(ID id) {
         return generalDao.findByIdForUpdateSkipLocked(em(), entityType, id, idAttribute());
@@ -149,6 +189,45 @@ public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> impleme
         return generalDao.merge(em(), entity);
     }
 
+    @Override
+    public BatchWriteStats persistAll(Collection<? extends ENTITY> entities) {
+        return generalDao.persistAll(em(), entities, defaultBatchSize());
+    }
+
+    @Override
+    public BatchWriteStats persistAll(Collection<? extends ENTITY> entities, int batchSize) {
+        return generalDao.persistAll(em(), entities, batchSize);
+    }
+
+    @Override
+    public BatchWriteStats mergeAll(Collection<? extends ENTITY> entities) {
+        return generalDao.mergeAll(em(), entities, defaultBatchSize());
+    }
+
+    @Override
+    public BatchWriteStats mergeAll(Collection<? extends ENTITY> entities, int batchSize) {
+        return generalDao.mergeAll(em(), entities, batchSize);
+    }
+
+    @Override
+    public long bulkInsert(Collection<? extends ENTITY> entities) {
+        return generalDao.bulkInsert(em(), entityType, entities);
+    }
+
+    @Override
+    public long upsertAll(Collection<? extends ENTITY> entities, List<SingularAttribute<? super ENTITY, ?>> conflictKey) {
+        return generalDao.upsertAll(em(), entityType, entities, conflictKey, defaultBatchSize());
+    }
+
+    @Override
+    public long upsertAll(
+            Collection<? extends ENTITY> entities,
+            List<SingularAttribute<? super ENTITY, ?>> conflictKey,
+            int batchSize
+    ) {
+        return generalDao.upsertAll(em(), entityType, entities, conflictKey, batchSize);
+    }
+
     @Override
     public void detach(ENTITY entity) {
         generalDao.detach(em(), entity);
@@ -179,6 +258,29 @@ public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> impleme
         return generalDao.bulkDeleteByIds(em(), entityType, idAttribute(), ids);
     }
 
+    @Override
+    public long bulkDeleteByIds(
+            Collection<ID> ids,
+            int chunkSize,
+            Duration pauseBetweenChunks,
+            ChunkCompletionMode chunkCompletionMode
+    ) {
+        return generalDao.bulkDeleteByIds(
+                em(), entityType, idAttribute(), ids, chunkSize, pauseBetweenChunks, chunkCompletionMode);
+    }
+
+    @Override
+    public long bulkUpdateByIds(
+            Collection<ID> ids,
+            Map<SingularAttribute<? super ENTITY, ?>, ?> values,
+            int chunkSize,
+            Duration pauseBetweenChunks,
+            ChunkCompletionMode chunkCompletionMode
+    ) {
+        return generalDao.bulkUpdateByIds(
+                em(), entityType, idAttribute(), ids, values, chunkSize, pauseBetweenChunks, chunkCompletionMode);
+    }
+
     protected <F, T> Join<F, T> fetchJoin(From<?, F> from, SingularAttribute<? super F, T> attribute) {
         return generalDao.fetchJoin(from, attribute);
     }
@@ -204,6 +306,49 @@ public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> impleme
         return generalDao.find(em(), query, offset, limit, queryCacheUsage);
     }
 
+    protected <R> List<R> find(CriteriaQuery<R> query, QueryReadMode queryReadMode) {
+        return generalDao.find(em(), query, queryReadMode);
+    }
+
+    protected <R> List<R> find(
+            CriteriaQuery<R> query,
+            Integer offset,
+            Integer limit,
+            QueryCacheMode queryCacheUsage,
+            QueryReadMode queryReadMode
+    ) {
+        return generalDao.find(em(), query, offset, limit, queryCacheUsage, queryReadMode);
+    }
+
+    protected <R> PageWithTotal<R> findPage(CriteriaQuery<R> query, Integer offset, int limit) {
+        return generalDao.findPage(em(), query, offset, limit);
+    }
+
+    protected <R> Slice<R> findSlice(CriteriaQuery<R> query, Integer offset, int limit) {
+        return generalDao.findSlice(em(), query, offset, limit);
+    }
+
+    protected <R> KeysetPage<R> findKeysetPage(
+            CriteriaQuery<R> query,
+            List<Order<? super R>> keyDefinition,
+            List<?> lastSeenKey,
+            int limit
+    ) {
+        return generalDao.findKeysetPage(em(), query, keyDefinition, lastSeenKey, limit);
+    }
+
+    protected <R> Stream<R> stream(CriteriaQuery<R> query, int fetchSize, int evictEvery) {
+        return generalDao.stream(em(), query, fetchSize, evictEvery);
+    }
+
+    protected <R> List<R> find(QueryTemplate<R> template, Map<String, ?> parameters) {
+        return generalDao.find(em(), template, parameters);
+    }
+
+    protected <R> R findFirst(QueryTemplate<R> template, Map<String, ?> parameters) {
+        return generalDao.findFirst(em(), template, parameters);
+    }
+
     protected long count(CriteriaQuery<Long> query, QueryCacheMode queryCacheUsage) {
         return generalDao.count(em(), query, queryCacheUsage, idAttribute());
     }
@@ -224,6 +369,10 @@ public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> impleme
         return generalDao.findFirst(em(), query, queryCachemode);
     }
 
+    protected <R> R findFirst(CriteriaQuery<R> query, QueryReadMode queryReadMode) {
+        return generalDao.findFirst(em(), query, queryReadMode);
+    }
+
     protected <R> R findFirstForUpdate(CriteriaQuery<R> query, Duration lockTimeout) {
         return generalDao.findFirstForUpdate(em(), query, lockTimeout);
     }
@@ -236,6 +385,10 @@ public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> impleme
         return generalDao.findFirstResultForUpdateSkipLocked(em(), query);
     }
 
+    protected <R> List<R> findForUpdateSkipLocked(CriteriaQuery<R> query, int limit) {
+        return generalDao.findForUpdateSkipLocked(em(), query, limit);
+    }
+
     protected <NUMBER extends Number> Predicate asPredicate(Expression<NUMBER> attribute, Filter numberFilter) {
         return generalDao.asPredicate(cb(), attribute, numberFilter);
     }
@@ -244,6 +397,14 @@ public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> impleme
         return generalDao.inCollection(cb(), attribute, filterItems);
     }
 
+    protected <E> Predicate inCollection(
+            Expression<E> attribute,
+            Collection<E> filterItems,
+            InListPadding inListPadding
+    ) {
+        return generalDao.inCollection(cb(), attribute, filterItems, inListPadding);
+    }
+
     protected Predicate betweenLeftInclRightExcl(
             Path<LocalDateTime> leftAttribute, Path<LocalDateTime> rightAttribute, LocalDate testDate
     ) {
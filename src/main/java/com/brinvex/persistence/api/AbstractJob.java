@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.MappedSuperclass;
+
+import java.time.Instant;
+
+/**
+ * Base class of job entities processed by a {@link JobQueue}.
+ * Subclasses add the id and the job payload.
+ * Claiming filters by {@code status} and orders by {@code availableAt},
+ * so the job table should be indexed by {@code (status, available_at)}.
+ * <p>
+ * Acknowledged jobs are deleted, failed jobs are kept with the last error.
+ */
+@MappedSuperclass
+public abstract class AbstractJob {
+
+    public static final int MAX_ERROR_LENGTH = 2000;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private JobStatus status;
+
+    @Column(nullable = false)
+    private int attemptCount;
+
+    @Column(nullable = false)
+    private Instant availableAt;
+
+    private Instant leaseExpiresAt;
+
+    @Column(length = MAX_ERROR_LENGTH)
+    private String lastError;
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(JobStatus status) {
+        this.status = status;
+    }
+
+    public int getAttemptCount() {
+        return attemptCount;
+    }
+
+    public void setAttemptCount(int attemptCount) {
+        this.attemptCount = attemptCount;
+    }
+
+    public Instant getAvailableAt() {
+        return availableAt;
+    }
+
+    /**
+     * Delays the first attempt of a job which is not yet enqueued
+     */
+    public void setAvailableAt(Instant availableAt) {
+        this.availableAt = availableAt;
+    }
+
+    public Instant getLeaseExpiresAt() {
+        return leaseExpiresAt;
+    }
+
+    public void setLeaseExpiresAt(Instant leaseExpiresAt) {
+        this.leaseExpiresAt = leaseExpiresAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Selection;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.hibernate.StatelessSession;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.Temporal;
+import java.time.temporal.TemporalAccessor;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+@SuppressWarnings({"unused"})
+public abstract class AbstractStatelessEntityDao<ENTITY, ID extends Serializable> implements StatelessEntityDao<ENTITY, ID> {
+
+    protected final Class<ENTITY> entityType;
+
+    protected final Class<ID> idType;
+
+    private StatelessSession session;
+
+    private CriteriaBuilder cb;
+
+    private final GeneralDao generalDao;
+
+    protected AbstractStatelessEntityDao(
+            Class<ENTITY> entityType,
+            Class<ID> idType
+    ) {
+        this(entityType, idType, GeneralDao.INSTANCE);
+    }
+
+    protected AbstractStatelessEntityDao(
+            Class<ENTITY> entityType,
+            Class<ID> idType,
+            GeneralDao generalDao
+    ) {
+        this.entityType = entityType;
+        this.idType = idType;
+        this.generalDao = Objects.requireNonNull(generalDao, "Expecting non-null generalDao");
+    }
+
+    protected abstract StatelessSession statelessSession();
+
+    protected StatelessSession session() {
+        if (this.session == null) {
+            this.session = statelessSession();
+            Objects.requireNonNull(this.session);
+        }
+        return this.session;
+    }
+
+    protected CriteriaBuilder cb() {
+        if (this.cb == null) {
+            this.cb = session().getCriteriaBuilder();
+        }
+        return this.cb;
+    }
+
+    @Override
+    public ENTITY getById(ID id) {
+        return generalDao.getById(session(), entityType, id);
+    }
+
+    @Override
+    public List<ENTITY> findByIds(Collection<ID> ids) {
+        return generalDao.findByIds(session(), entityType, ids);
+    }
+
+    @Override
+    public void insert(ENTITY entity) {
+        generalDao.insert(session(), entity);
+    }
+
+    @Override
+    public void insertAll(List<? extends ENTITY> entities) {
+        generalDao.insertAll(session(), entities);
+    }
+
+    @Override
+    public void update(ENTITY entity) {
+        generalDao.update(session(), entity);
+    }
+
+    @Override
+    public void updateAll(List<? extends ENTITY> entities) {
+        generalDao.updateAll(session(), entities);
+    }
+
+    @Override
+    public void delete(ENTITY entity) {
+        generalDao.delete(session(), entity);
+    }
+
+    /**
+     * Initializes a lazy association of a loaded entity,
+     * which a stateless session never does implicitly.
+     */
+    protected void fetch(Object association) {
+        session().fetch(association);
+    }
+
+    protected <F, T> Join<F, T> fetchJoin(From<?, F> from, SingularAttribute<? super F, T> attribute) {
+        return generalDao.fetchJoin(from, attribute);
+    }
+
+    protected <R> List<R> find(CriteriaQuery<R> query) {
+        return generalDao.find(session(), query);
+    }
+
+    protected <R> List<R> find(CriteriaQuery<R> query, Integer offset, Integer limit) {
+        return generalDao.find(session(), query, offset, limit);
+    }
+
+    protected <R> R findFirst(CriteriaQuery<R> query) {
+        return generalDao.findFirst(session(), query);
+    }
+
+    protected <R> Stream<R> stream(CriteriaQuery<R> query, int fetchSize) {
+        return generalDao.stream(session(), query, fetchSize);
+    }
+
+    protected <NUMBER extends Number> Predicate asPredicate(Expression<NUMBER> attribute, Filter numberFilter) {
+        return generalDao.asPredicate(cb(), attribute, numberFilter);
+    }
+
+    protected <E> Predicate inCollection(Expression<E> attribute, Collection<E> filterItems) {
+        return generalDao.inCollection(cb(), attribute, filterItems);
+    }
+
+    protected <E> Predicate inCollection(
+            Expression<E> attribute,
+            Collection<E> filterItems,
+            InListPadding inListPadding
+    ) {
+        return generalDao.inCollection(cb(), attribute, filterItems, inListPadding);
+    }
+
+    protected Predicate betweenLeftInclRightExcl(
+            Path<LocalDateTime> leftAttribute, Path<LocalDateTime> rightAttribute, LocalDate testDate
+    ) {
+        return generalDao.betweenLeftInclRightExcl(cb(), leftAttribute, rightAttribute, testDate);
+    }
+
+    protected Predicate betweenLeftInclRightExcl(
+            Path<LocalDateTime> leftAttribute, Path<LocalDateTime> rightAttribute, LocalDateTime testDate
+    ) {
+        return generalDao.betweenLeftInclRightExcl(cb(), leftAttribute, rightAttribute, testDate);
+    }
+
+    protected <T extends Number> Expression<T> sum(
+            Expression<T> expression1,
+            Expression<T> expression2,
+            Expression<T> expression3
+    ) {
+        return generalDao.sum(cb(), expression1, expression2, expression3);
+    }
+
+    protected Expression<Integer> least(Integer literal1, Expression<Integer> expression2) {
+        return generalDao.least(cb(), literal1, expression2);
+    }
+
+    protected Expression<Integer> greatest(Integer literal1, Expression<Integer> expression2) {
+        return generalDao.greatest(cb(), literal1, expression2);
+    }
+
+    protected Expression<Integer> day(Expression<? extends TemporalAccessor> datetimeExpression) {
+        return generalDao.day(cb(), datetimeExpression);
+    }
+
+    protected Expression<Integer> month(Expression<? extends TemporalAccessor> datetimeExpression) {
+        return generalDao.month(cb(), datetimeExpression);
+    }
+
+    protected Expression<Integer> year(Expression<? extends TemporalAccessor> datetimeExpression) {
+        return generalDao.year(cb(), datetimeExpression);
+    }
+
+    protected <T extends Temporal> Expression<Duration> durationBetween(
+            Expression<T> leftDatetimeExpr,
+            Expression<T> rightDatetimeExpr
+    ) {
+        return generalDao.durationBetween(cb(), leftDatetimeExpr, rightDatetimeExpr);
+    }
+
+    protected <R> CriteriaQuery<R> applySelections(
+            CriteriaQuery<R> q,
+            Class<R> resultType,
+            Collection<Selection<?>> selections
+    ) {
+        return generalDao.applySelections(cb(), q, resultType, selections);
+    }
+
+}
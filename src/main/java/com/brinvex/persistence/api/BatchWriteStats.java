@@ -0,0 +1,33 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+import java.time.Duration;
+
+/**
+ * Statistics of a batched write of many entities.
+ *
+ * @param entityCount the number of written entities
+ * @param flushCount  the number of flushes, each followed by clearing the persistence context
+ * @param elapsed     the wall-clock duration of the whole write, including the flushes
+ */
+public record BatchWriteStats(int entityCount, int flushCount, Duration elapsed) {
+
+    public double entitiesPerSecond() {
+        long nanos = elapsed.toNanos();
+        return nanos == 0 ? 0 : entityCount * 1_000_000_000.0 / nanos;
+    }
+}
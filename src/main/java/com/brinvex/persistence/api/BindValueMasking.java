@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+/**
+ * How the bind values of a slow query are rendered in a {@link SlowQueryRecord}.
+ * Masked values are rendered as {@code ***}, followed by their type.
+ */
+public enum BindValueMasking {
+
+    /**
+     * Default option
+     */
+    MASK_ALL,
+
+    /**
+     * Masks texts and binary values, renders numbers, temporals, booleans, enums and UUIDs
+     */
+    MASK_TEXT,
+
+    NONE,
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+/**
+ * Controls what happens after each chunk of a chunked bulk operation.
+ */
+public enum ChunkCompletionMode {
+
+    /**
+     * Nothing is done between chunks, all chunks run in the caller's transaction.
+     * Entities of the persistence context affected by a chunk are left as they are,
+     * e.g. entities deleted by a bulk delete stay managed. This is the default.
+     */
+    NONE,
+
+    /**
+     * Flushes and clears the persistence context after each chunk,
+     * so that no entity deleted or updated by a chunk stays managed in its stale state.
+     * All other entities of the persistence context are detached as well.
+     */
+    FLUSH_AND_CLEAR,
+
+    /**
+     * Commits the current resource-local transaction and begins a new one after each chunk,
+     * which releases the row locks taken by the chunk.
+     * The caller's transaction is committed too, including any changes it made before the call,
+     * and a failing chunk rolls back only the chunks not yet committed.
+     * The persistence context is kept. Not applicable to JTA-managed entity managers.
+     */
+    COMMIT,
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+import org.hibernate.dialect.Database;
+import org.hibernate.dialect.DatabaseVersion;
+
+/**
+ * What the database behind an {@link jakarta.persistence.EntityManagerFactory} supports,
+ * resolved once when the factory is built.
+ *
+ * @param database             null if the database is not one of the databases this library supports
+ * @param maxBindParameters    the maximum number of bind parameters of a single statement, zero if unknown
+ * @param supportsArrayBinding whether a collection can be bound as a single array parameter,
+ *                             e.g. {@code id = any(?)}
+ * @param supportsUpsert       whether {@link GeneralDao#upsertAll} is supported
+ */
+public record DatabaseCapabilities(
+        Database database,
+        DatabaseVersion version,
+        int maxBindParameters,
+        boolean supportsArrayBinding,
+        boolean supportsSkipLocked,
+        boolean supportsUpsert
+) {
+}
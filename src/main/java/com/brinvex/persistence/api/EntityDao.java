@@ -15,10 +15,13 @@
  */
 package com.brinvex.persistence.api;
 
+import jakarta.persistence.metamodel.SingularAttribute;
+
 import java.io.Serializable;
 import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 
 public interface EntityDao<ENTITY, ID extends Serializable> {
@@ -33,6 +36,20 @@ public interface EntityDao<ENTITY, ID extends Serializable> {
 
     List<ENTITY> findByIds(Collection<ID> ids);
 
+    List<ENTITY> findByIds(Collection<ID> ids, QueryReadMode queryReadMode);
+
+    List<ENTITY> findByIdsInChunks(Collection<ID> ids, int chunkSize);
+
+    Map<ID, ENTITY> findByIdsAsMap(Collection<ID> ids);
+
+    Map<ID, ENTITY> findByIdsAsMap(Collection<ID> ids, ResultOrderMode resultOrderMode);
+
+    Map<ID, ENTITY> findByIdsAsMap(Collection<ID> ids, ResultOrderMode resultOrderMode, QueryReadMode queryReadMode);
+
+    List<ENTITY> findByIdsInRequestedOrder(List<ID> ids);
+
+    List<ENTITY> findByIdsInRequestedOrder(List<ID> ids, QueryReadMode queryReadMode);
+
     ENTITY findByIdForUpdateSkipLocked(ID id);
 
     ENTITY getReference(ID id);
@@ -46,6 +63,24 @@ public interface EntityDao<ENTITY, ID extends Serializable> {
 
     ENTITY merge(ENTITY entity);
 
+    BatchWriteStats persistAll(Collection<? extends ENTITY> entities);
+
+    BatchWriteStats persistAll(Collection<? extends ENTITY> entities, int batchSize);
+
+    BatchWriteStats mergeAll(Collection<? extends ENTITY> entities);
+
+    BatchWriteStats mergeAll(Collection<? extends ENTITY> entities, int batchSize);
+
+    long bulkInsert(Collection<? extends ENTITY> entities);
+
+    long upsertAll(Collection<? extends ENTITY> entities, List<SingularAttribute<? super ENTITY, ?>> conflictKey);
+
+    long upsertAll(
+            Collection<? extends ENTITY> entities,
+            List<SingularAttribute<? super ENTITY, ?>> conflictKey,
+            int batchSize
+    );
+
     void detach(ENTITY entity);
 
     void flush();
@@ -57,4 +92,19 @@ public interface EntityDao<ENTITY, ID extends Serializable> {
     void remove(ENTITY entity);
 
     int bulkDeleteByIds(Collection<ID> ids);
+
+    long bulkDeleteByIds(
+            Collection<ID> ids,
+            int chunkSize,
+            Duration pauseBetweenChunks,
+            ChunkCompletionMode chunkCompletionMode
+    );
+
+    long bulkUpdateByIds(
+            Collection<ID> ids,
+            Map<SingularAttribute<? super ENTITY, ?>, ?> values,
+            int chunkSize,
+            Duration pauseBetweenChunks,
+            ChunkCompletionMode chunkCompletionMode
+    );
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+import jakarta.persistence.metamodel.SingularAttribute;
+
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+/**
+ * Mapping details of an entity, resolved once when the {@link jakarta.persistence.EntityManagerFactory} is built.
+ *
+ * @param idAttribute         null if the entity has no single id attribute, e.g. with {@link jakarta.persistence.IdClass}
+ * @param versionAttribute    null if the entity is not versioned
+ * @param tableName           the table holding the id, i.e. the root table of an entity hierarchy
+ * @param idColumnNames       the id columns of {@code tableName}
+ * @param columnNames         the columns of {@code tableName} written when inserting the entity, ids first
+ * @param naturalIdAttributes the {@link org.hibernate.annotations.NaturalId} attributes, empty if none
+ */
+public record EntityMetadata<ENTITY>(
+        Class<ENTITY> entityType,
+        SingularAttribute<? super ENTITY, ?> idAttribute,
+        SingularAttribute<? super ENTITY, ?> versionAttribute,
+        String tableName,
+        List<String> idColumnNames,
+        List<String> columnNames,
+        List<SingularAttribute<? super ENTITY, ?>> naturalIdAttributes
+) {
+
+    /**
+     * Returns the id attribute, checked to be of the given type.
+     */
+    @SuppressWarnings("unchecked")
+    public <ID> SingularAttribute<? super ENTITY, ID> idAttribute(Class<ID> idType) {
+        if (idAttribute == null) {
+            throw new IllegalStateException("Entity has no single id attribute: " + entityType);
+        }
+        if (!wrap(idType).equals(wrap(idAttribute.getJavaType()))) {
+            throw new IllegalArgumentException(
+                    "Illegal idType: " + idType + ", the id of " + entityType + " is " + idAttribute.getJavaType());
+        }
+        return (SingularAttribute<? super ENTITY, ID>) idAttribute;
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    public boolean isVersioned() {
+        return versionAttribute != null;
+    }
+}
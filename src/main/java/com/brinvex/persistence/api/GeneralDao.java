@@ -1,6 +1,7 @@
 package com.brinvex.persistence.api;
 
 import com.brinvex.persistence.internal.GeneralDaoImpl;
+import com.brinvex.persistence.internal.InterceptedGeneralDao;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.CriteriaBuilder;
@@ -12,7 +13,9 @@ import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Selection;
 import jakarta.persistence.metamodel.SingularAttribute;
+import org.hibernate.StatelessSession;
 import org.hibernate.dialect.Database;
+import org.hibernate.query.Order;
 import org.hibernate.query.Query;
 import org.hibernate.query.criteria.HibernateCriteriaBuilder;
 import org.hibernate.query.criteria.JpaExpression;
@@ -26,12 +29,25 @@ import java.time.temporal.Temporal;
 import java.time.temporal.TemporalAccessor;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 public interface GeneralDao {
 
     GeneralDao INSTANCE = new GeneralDaoImpl();
 
+    /**
+     * Returns a {@link GeneralDao} which passes each data access operation of the target,
+     * i.e. each method taking an {@link EntityManager} or a {@link StatelessSession} except the metadata lookups
+     * such as {@link #getEntityMetadata}, through the interceptors in the given order, the first one being the outermost.
+     * Without interceptors, the target itself is returned, so there is no overhead.
+     * Calls the target makes to itself are not intercepted.
+     */
+    static GeneralDao withInterceptors(GeneralDao target, List<? extends GeneralDaoInterceptor> interceptors) {
+        return InterceptedGeneralDao.of(target, interceptors);
+    }
+
     <ENTITY, ID extends Serializable> ENTITY getById(EntityManager em, Class<ENTITY> entityType, ID id);
 
     <ENTITY, ID extends Serializable> ENTITY getByIdForUpdate(
@@ -64,6 +80,12 @@ public interface GeneralDao {
             SingularAttribute<? super ENTITY, ID> idAttribute
     );
 
+    /**
+     * Loads entities by ids using Hibernate multi-identifier loading.
+     * Entities already managed by the persistence context or present in the second-level cache
+     * are returned without a database round trip, only the remaining ids are queried.
+     * Ids without a matching entity are skipped. The order of the result is unspecified.
+     */
     <ENTITY, ID extends Serializable> List<ENTITY> findByIds(
             EntityManager em,
             Class<ENTITY> entityType,
@@ -71,6 +93,78 @@ public interface GeneralDao {
             SingularAttribute<? super ENTITY, ID> idAttribute
     );
 
+    /**
+     * Same as {@link #findByIds(EntityManager, Class, Collection, SingularAttribute)},
+     * with {@link QueryReadMode#READ_ONLY} the newly loaded entities are read-only.
+     */
+    <ENTITY, ID extends Serializable> List<ENTITY> findByIds(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            Collection<ID> ids,
+            SingularAttribute<? super ENTITY, ID> idAttribute,
+            QueryReadMode queryReadMode
+    );
+
+    /**
+     * Loads entities by ids in bounded chunks, one round trip per chunk.
+     * On PostgreSQL, each chunk is bound as a single array parameter ({@code id = any(?)}),
+     * so the same statement is reused regardless of the number of ids.
+     * On other databases, each chunk is sent as an {@code in} list.
+     * Duplicate ids are loaded only once.
+     */
+    <ENTITY, ID extends Serializable> List<ENTITY> findByIdsInChunks(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            Collection<ID> ids,
+            SingularAttribute<? super ENTITY, ID> idAttribute,
+            int chunkSize
+    );
+
+    /**
+     * Loads entities by ids and returns them keyed by the requested ids.
+     * Ids without a matching entity have no entry in the map.
+     * With {@link ResultOrderMode#AS_REQUESTED}, the map iterates in the order of the requested ids.
+     */
+    <ENTITY, ID extends Serializable> Map<ID, ENTITY> findByIdsAsMap(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            Collection<ID> ids,
+            ResultOrderMode resultOrderMode
+    );
+
+    /**
+     * Same as {@link #findByIdsAsMap(EntityManager, Class, Collection, ResultOrderMode)},
+     * with {@link QueryReadMode#READ_ONLY} the newly loaded entities are read-only.
+     */
+    <ENTITY, ID extends Serializable> Map<ID, ENTITY> findByIdsAsMap(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            Collection<ID> ids,
+            ResultOrderMode resultOrderMode,
+            QueryReadMode queryReadMode
+    );
+
+    /**
+     * Loads entities by ids and returns a list positionally aligned with the requested ids.
+     * Ids without a matching entity are represented by nulls.
+     */
+    <ENTITY, ID extends Serializable> List<ENTITY> findByIdsInRequestedOrder(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            List<ID> ids
+    );
+
+    /**
+     * Same as {@link #findByIdsInRequestedOrder(EntityManager, Class, List)},
+     * with {@link QueryReadMode#READ_ONLY} the newly loaded entities are read-only.
+     */
+    <ENTITY, ID extends Serializable> List<ENTITY> findByIdsInRequestedOrder(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            List<ID> ids,
+            QueryReadMode queryReadMode
+    );
+
     <ENTITY, ID, DTO> DTO findByIdAsDTO(
             EntityManager em,
             Class<ENTITY> entityType,
@@ -88,6 +182,62 @@ public interface GeneralDao {
 
     <ENTITY> ENTITY merge(EntityManager em, ENTITY entity);
 
+    /**
+     * Persists the entities using JDBC batching with the given batch size.
+     * The persistence context is flushed after every {@code batchSize} entities and at the end,
+     * and the entities written since the call began are detached, so its size stays bounded.
+     * Entities managed before the call stay managed, but their pending changes are flushed with the first batch.
+     * Entities are grouped by their type, in the order of the first occurrence of each type,
+     * so that the batches of one table are not interrupted by inserts into another one.
+     * Hence, the entities are not necessarily written in the order of the given collection.
+     * Note that Hibernate does not batch inserts of entities with {@code IDENTITY} generated ids.
+     */
+    <ENTITY> BatchWriteStats persistAll(EntityManager em, Collection<? extends ENTITY> entities, int batchSize);
+
+    /**
+     * Merges the entities in the same way as {@link #persistAll(EntityManager, Collection, int)} persists them.
+     * The merged instances are detached on return, unless they were managed before the call.
+     */
+    <ENTITY> BatchWriteStats mergeAll(EntityManager em, Collection<? extends ENTITY> entities, int batchSize);
+
+    /**
+     * Inserts the entities by streaming them in the CSV format through PostgreSQL {@code COPY ... FROM STDIN},
+     * bypassing the persistence context. Requires the PostgreSQL JDBC driver.
+     * Columns are resolved from the Hibernate mapping of the entity, which must be mapped to a single table.
+     * Null ids are assigned by the entity id generator before the rows are sent,
+     * sequence based generators use their pre-allocated value pools.
+     * Ids generated by the database on insert (e.g. {@code IDENTITY}) are not supported.
+     * Null or negative versions are seeded.
+     * The entities do not become managed. Pending changes of the persistence context are flushed first.
+     *
+     * @return the number of inserted rows
+     */
+    <ENTITY> long bulkInsert(EntityManager em, Class<ENTITY> entityType, Collection<? extends ENTITY> entities);
+
+    /**
+     * Inserts the entities or updates the existing rows matching them on {@code conflictKey},
+     * by one multi-row statement per batch: {@code INSERT ... ON CONFLICT ... DO UPDATE} on PostgreSQL
+     * and {@code MERGE} on SQL Server. The conflict key attributes must be backed by a unique constraint
+     * and must not repeat within a batch.
+     * An existing row gets all the columns except the key, the id and the version overwritten,
+     * its version is incremented and its id is kept.
+     * Null ids are assigned by the entity id generator and null or negative versions are seeded,
+     * as in {@link #bulkInsert(EntityManager, Class, Collection)}, before it is known whether a row is inserted,
+     * so an entity which updates an existing row still consumes a generated id.
+     * After the statement, each entity is set the id and the version of its row as returned by the database.
+     * The entity id must be mapped to a single column.
+     * The persistence context is bypassed, its pending changes are flushed first.
+     *
+     * @return the number of inserted or updated rows
+     */
+    <ENTITY> long upsertAll(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            Collection<? extends ENTITY> entities,
+            List<SingularAttribute<? super ENTITY, ?>> conflictKey,
+            int batchSize
+    );
+
     <ENTITY> void detach(EntityManager em, ENTITY entity);
 
     void flush(EntityManager em);
@@ -105,6 +255,53 @@ public interface GeneralDao {
             Collection<ID> ids
     );
 
+    /**
+     * Deletes entities by ids in chunks of at most {@code chunkSize} ids, one statement per chunk.
+     * On PostgreSQL, each chunk is bound as a single array parameter.
+     * Only {@link ChunkCompletionMode#COMMIT} holds the row locks just for the duration of a chunk,
+     * otherwise all chunks run in the caller's transaction and their locks are held until it completes,
+     * pauses between chunks included.
+     * Deleted entities already loaded into the persistence context stay managed,
+     * unless {@link ChunkCompletionMode#FLUSH_AND_CLEAR} is used.
+     *
+     * @param pauseBetweenChunks  optional pause between two consecutive chunks, may be null
+     * @param chunkCompletionMode what to do after each chunk, null means {@link ChunkCompletionMode#NONE}
+     * @return the total number of deleted rows
+     */
+    <ENTITY, ID extends Serializable> long bulkDeleteByIds(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            SingularAttribute<? super ENTITY, ID> idAttribute,
+            Collection<ID> ids,
+            int chunkSize,
+            Duration pauseBetweenChunks,
+            ChunkCompletionMode chunkCompletionMode
+    );
+
+    /**
+     * Sets the given attribute values on the entities with the given ids, without loading them,
+     * by bulk update statements of at most {@code chunkSize} ids each.
+     * The version attribute, if any, is incremented.
+     * On PostgreSQL, each chunk is bound as a single array parameter.
+     * Entities already loaded into the persistence context are not refreshed,
+     * use {@link ChunkCompletionMode#FLUSH_AND_CLEAR} to detach them.
+     *
+     * @param values              the new values keyed by the attributes to update, id and version attributes are not allowed
+     * @param pauseBetweenChunks  optional pause between two consecutive chunks, may be null
+     * @param chunkCompletionMode what to do after each chunk, null means {@link ChunkCompletionMode#NONE}
+     * @return the total number of updated rows
+     */
+    <ENTITY, ID extends Serializable> long bulkUpdateByIds(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            SingularAttribute<? super ENTITY, ID> idAttribute,
+            Collection<ID> ids,
+            Map<SingularAttribute<? super ENTITY, ?>, ?> values,
+            int chunkSize,
+            Duration pauseBetweenChunks,
+            ChunkCompletionMode chunkCompletionMode
+    );
+
     <F, T> Join<F, T> fetchJoin(From<?, F> from, SingularAttribute<? super F, T> attribute);
 
     <R> List<R> find(EntityManager em, CriteriaQuery<R> query);
@@ -121,6 +318,81 @@ public interface GeneralDao {
             QueryCacheMode queryCacheMode
     );
 
+    /**
+     * With {@link QueryReadMode#READ_ONLY}, the entities loaded by the query are read-only,
+     * Hibernate keeps no snapshot of their state and skips them when dirty-checking at flush.
+     * Meant for results which are only displayed, especially large ones.
+     */
+    <R> List<R> find(EntityManager em, CriteriaQuery<R> query, QueryReadMode queryReadMode);
+
+    <R> List<R> find(
+            EntityManager em,
+            CriteriaQuery<R> query,
+            Integer offset,
+            Integer limit,
+            QueryCacheMode queryCacheMode,
+            QueryReadMode queryReadMode
+    );
+
+    /**
+     * Returns one page of the query results together with the total number of matching rows,
+     * both fetched by a single statement using the window aggregate {@code count(*) over()}.
+     * A separate count query is issued only if the page is empty and the offset is positive.
+     * A {@code DISTINCT} query always uses a separate count query,
+     * because the window aggregate is evaluated before duplicates are removed.
+     * The query must have a single, non-compound selection and no collection fetch joins.
+     */
+    <R> PageWithTotal<R> findPage(EntityManager em, CriteriaQuery<R> query, Integer offset, int limit);
+
+    /**
+     * Returns one page of the query results without counting the matching rows.
+     * One more row than {@code limit} is fetched to find out whether a next page exists.
+     */
+    <R> Slice<R> findSlice(EntityManager em, CriteriaQuery<R> query, Integer offset, int limit);
+
+    /**
+     * Returns one page of the query results using keyset (seek) pagination.
+     * Instead of skipping {@code offset} rows, the query is restricted to the rows
+     * following {@code lastSeenKey} in the order given by {@code keyDefinition},
+     * so the cost of a page does not grow with its depth.
+     * The key attributes must be non-null attributes of the query root and together must be unique,
+     * e.g. a date followed by the id. The ordering of the query is replaced by the key ordering.
+     * The query must select its root entity. It is not modified, the seek query is built on a copy of it.
+     *
+     * @param lastSeenKey the key values of the last row of the previous page,
+     *                    see {@link KeysetPage#nextKey()}; null to fetch the first page
+     */
+    <R> KeysetPage<R> findKeysetPage(
+            EntityManager em,
+            CriteriaQuery<R> query,
+            List<Order<? super R>> keyDefinition,
+            List<?> lastSeenKey,
+            int limit
+    );
+
+    /**
+     * Returns a lazily populated stream of the query results backed by a forward-only Hibernate scroll,
+     * so the results are never materialized as a whole.
+     * The JDBC fetch size bounds the number of rows the driver buffers per round trip;
+     * on PostgreSQL, a server-side cursor is used as long as the stream is consumed inside a transaction.
+     * The stream holds an open JDBC result set and must be closed, preferably by try-with-resources.
+     *
+     * @param fetchSize  the JDBC fetch size
+     * @param evictEvery if positive, each time this number of rows has been consumed, the entities loaded
+     *                   since the stream was opened are detached from the persistence context,
+     *                   including the associations fetched with the rows or initialized while consuming them.
+     *                   The eviction happens when the next row is fetched, so the rows of the last batch stay managed.
+     *                   Entities managed before the stream was opened are kept. Detached entities are not flushed.
+     *                   Zero means no eviction.
+     */
+    <R> Stream<R> stream(EntityManager em, CriteriaQuery<R> query, int fetchSize, int evictEvery);
+
+    <R> TypedQuery<R> createQuery(EntityManager em, QueryTemplate<R> template, Map<String, ?> parameters);
+
+    <R> List<R> find(EntityManager em, QueryTemplate<R> template, Map<String, ?> parameters);
+
+    <R> R findFirst(EntityManager em, QueryTemplate<R> template, Map<String, ?> parameters);
+
     <R> CriteriaQuery<R> applySelections(
             CriteriaBuilder cb,
             CriteriaQuery<R> q,
@@ -141,6 +413,8 @@ public interface GeneralDao {
 
     <R> R findFirst(EntityManager em, CriteriaQuery<R> q, QueryCacheMode queryCacheMode);
 
+    <R> R findFirst(EntityManager em, CriteriaQuery<R> q, QueryReadMode queryReadMode);
+
     void setTransactionScopedLockTimeout(EntityManager em, Duration timeout);
 
     <R> R findFirstForUpdate(
@@ -157,10 +431,20 @@ public interface GeneralDao {
 
     <R> R findFirstResultForUpdateSkipLocked(EntityManager em, CriteriaQuery<R> q);
 
+    /**
+     * Locks and returns up to {@code limit} rows of the query by a single {@code for update skip locked} statement.
+     * Rows locked by other transactions are skipped instead of waited for,
+     * so competing workers can claim disjoint batches of rows from the same table.
+     * The query should be ordered to make the claimed batches predictable.
+     */
+    <R> List<R> findForUpdateSkipLocked(EntityManager em, CriteriaQuery<R> q, int limit);
+
     <R> Query<R> asHibernateQuery(TypedQuery<R> typedQuery);
 
     <R> void applyQueryCacheHint(TypedQuery<R> typedQuery, QueryCacheMode queryCacheMode);
 
+    <R> void applyReadOnlyHint(TypedQuery<R> typedQuery, QueryReadMode queryReadMode);
+
     <NUMBER extends Number> Predicate asPredicate(
             CriteriaBuilder cb,
             Expression<NUMBER> attribute,
@@ -173,6 +457,13 @@ public interface GeneralDao {
             Collection<E> filterItems
     );
 
+    <E> Predicate inCollection(
+            CriteriaBuilder cb,
+            Expression<E> attribute,
+            Collection<E> filterItems,
+            InListPadding inListPadding
+    );
+
     Predicate betweenLeftInclRightExcl(
             CriteriaBuilder cb,
             Path<LocalDateTime> leftAttribute, Path<LocalDateTime> rightAttribute, LocalDate testDate
@@ -208,8 +499,69 @@ public interface GeneralDao {
             Expression<T> rightDatetimeExpression
     );
 
+    <ENTITY, ID extends Serializable> ENTITY getById(StatelessSession session, Class<ENTITY> entityType, ID id);
+
+    /**
+     * Loads entities by ids in one round trip. Ids without a matching entity are skipped.
+     * As with an {@link EntityManager}, null ids load all entities of the type.
+     */
+    <ENTITY, ID extends Serializable> List<ENTITY> findByIds(
+            StatelessSession session,
+            Class<ENTITY> entityType,
+            Collection<ID> ids
+    );
+
+    <R> List<R> find(StatelessSession session, CriteriaQuery<R> query);
+
+    <R> List<R> find(StatelessSession session, CriteriaQuery<R> query, Integer offset, Integer limit);
+
+    <R> R findFirst(StatelessSession session, CriteriaQuery<R> q);
+
+    /**
+     * Returns a lazily populated stream of the query results, which must be closed.
+     * Unlike {@link #stream(EntityManager, CriteriaQuery, int, int)}, no eviction is needed
+     * because a stateless session keeps no persistence context.
+     */
+    <R> Stream<R> stream(StatelessSession session, CriteriaQuery<R> query, int fetchSize);
+
+    <ENTITY> void insert(StatelessSession session, ENTITY entity);
+
+    /**
+     * Inserts the entities using JDBC batching if a JDBC batch size is set for the session.
+     */
+    <ENTITY> void insertAll(StatelessSession session, List<? extends ENTITY> entities);
+
+    <ENTITY> void update(StatelessSession session, ENTITY entity);
+
+    /**
+     * Updates the entities using JDBC batching if a JDBC batch size is set for the session.
+     */
+    <ENTITY> void updateAll(StatelessSession session, List<? extends ENTITY> entities);
+
+    <ENTITY> void delete(StatelessSession session, ENTITY entity);
+
     HibernateCriteriaBuilder hcb(CriteriaBuilder cb);
 
+    /**
+     * Returns the capabilities of the database, resolved once per {@link jakarta.persistence.EntityManagerFactory}.
+     */
+    DatabaseCapabilities getDatabaseCapabilities(EntityManager em);
+
+    /**
+     * Returns the mapping details of the entity, resolved once per {@link jakarta.persistence.EntityManagerFactory}.
+     */
+    <ENTITY> EntityMetadata<ENTITY> getEntityMetadata(EntityManager em, Class<ENTITY> entityType);
+
+    /**
+     * Starts counting the SQL statements, entity loads and collection loads of the current transaction
+     * and checks them against the budget, e.g. to let a test fail on an N+1 problem.
+     * The counting stops when the transaction completes.
+     *
+     * @throws jakarta.persistence.TransactionRequiredException if there is no active transaction
+     * @throws IllegalStateException if the current transaction is already tracked
+     */
+    StatementTracker trackStatements(EntityManager em, StatementBudget budget);
+
     Database getDatabase(EntityManager em);
 
     Database detectDatabase(EntityManager em);
@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+/**
+ * Wraps the data access operations of a {@link GeneralDao},
+ * see {@link GeneralDao#withInterceptors(GeneralDao, java.util.List)}.
+ * <p>
+ * Typical uses are latency timing, sampling and policy enforcement:
+ * <pre>
+ * GeneralDaoInterceptor timing = invocation -> {
+ *     long start = System.nanoTime();
+ *     Object result = invocation.proceed();
+ *     record(invocation.operation(), invocation.entityType(), System.nanoTime() - start,
+ *             invocation.resultSize(result));
+ *     return result;
+ * };
+ * </pre>
+ */
+@FunctionalInterface
+public interface GeneralDaoInterceptor {
+
+    /**
+     * Returns the result of {@link GeneralDaoInvocation#proceed()}, or rejects the operation by throwing.
+     */
+    Object intercept(GeneralDaoInvocation invocation);
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+import jakarta.persistence.criteria.CommonAbstractCriteria;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * A {@link GeneralDao} operation passed through the {@link GeneralDaoInterceptor} chain.
+ */
+public interface GeneralDaoInvocation {
+
+    /**
+     * The name of the invoked {@link GeneralDao} method, e.g. {@code findByIds}
+     */
+    String operation();
+
+    /**
+     * The entity type passed to the operation, or else the type of the root of its criteria query;
+     * null if neither is available
+     */
+    Class<?> entityType();
+
+    /**
+     * The criteria query, update or delete passed to the operation, null if none
+     */
+    CommonAbstractCriteria query();
+
+    /**
+     * The arguments of the operation, must not be modified
+     */
+    Object[] arguments();
+
+    /**
+     * Invokes the next interceptor of the chain, or the operation itself after the last one.
+     * May be called more than once, e.g. to retry, each call runs the rest of the chain again.
+     */
+    Object proceed();
+
+    /**
+     * Returns the number of results or written rows represented by the result of this operation,
+     * zero for null, -1 for a stream which has not been consumed yet, the returned row count of a bulk write
+     * and one for any other single value, including the value returned by {@code count}.
+     */
+    default int resultSize(Object result) {
+        return switch (result) {
+            case null -> 0;
+            case Collection<?> c -> c.size();
+            case Map<?, ?> m -> m.size();
+            case PageWithTotal<?> p -> p.results().size();
+            case Slice<?> s -> s.results().size();
+            case KeysetPage<?> p -> p.results().size();
+            case BatchWriteStats s -> s.entityCount();
+            case Stream<?> _ -> -1;
+            case Number n when isBulkWrite(operation()) -> (int) Math.min(Integer.MAX_VALUE, n.longValue());
+            default -> 1;
+        };
+    }
+
+    private static boolean isBulkWrite(String operation) {
+        return switch (operation) {
+            case "bulkInsert", "upsertAll", "bulkDeleteByIds", "bulkUpdateByIds" -> true;
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+/**
+ * Controls how the bind parameters of an {@code in} predicate are padded.
+ * Padding reduces the number of distinct SQL strings produced for collections of varying size,
+ * which improves the reuse of Hibernate query plans and database prepared statements.
+ */
+public enum InListPadding {
+
+    /**
+     * Default option
+     */
+    NONE,
+
+    /**
+     * Rounds the number of bind parameters up to the next power of two by repeating the last value
+     */
+    POWER_OF_TWO,
+
+}
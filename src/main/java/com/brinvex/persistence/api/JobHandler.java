@@ -0,0 +1,28 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+import jakarta.persistence.EntityManager;
+
+@FunctionalInterface
+public interface JobHandler<JOB extends AbstractJob> {
+
+    /**
+     * Processes a job within the transaction which acknowledges it.
+     * A thrown exception rolls the transaction back and the job is retried later.
+     */
+    void handle(EntityManager em, JOB job) throws Exception;
+}
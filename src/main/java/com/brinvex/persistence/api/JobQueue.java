@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+import com.brinvex.persistence.internal.JobQueueImpl;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A queue of jobs stored as {@link AbstractJob} entities in a database table.
+ * <p>
+ * Jobs are claimed with {@code for update skip locked}, so any number of consumers can share the queue.
+ * A claimed job is leased to its consumer for {@link JobQueueConfig#leaseDuration()}
+ * and is either acknowledged (deleted) or not acknowledged (retried later or failed).
+ * A job whose consumer died is claimed again once its lease expires.
+ * On PostgreSQL, enqueueing notifies idle consumers via {@code LISTEN/NOTIFY}, so they do not need to poll.
+ * <p>
+ * Time is taken from the JVM clock, so the clocks of all hosts sharing a queue should be synchronized.
+ */
+public interface JobQueue<JOB extends AbstractJob> {
+
+    static <JOB extends AbstractJob> JobQueue<JOB> of(Class<JOB> jobType, JobQueueConfig config) {
+        return new JobQueueImpl<>(jobType, config, GeneralDao.INSTANCE);
+    }
+
+    Class<JOB> jobType();
+
+    JobQueueConfig config();
+
+    /**
+     * Persists the job as {@link JobStatus#READY}.
+     * Consumers are notified when the transaction commits.
+     */
+    void enqueue(EntityManager em, JOB job);
+
+    /**
+     * Persists the jobs as {@link JobStatus#READY} and notifies consumers once.
+     */
+    void enqueueAll(EntityManager em, Collection<? extends JOB> jobs);
+
+    /**
+     * Claims up to {@code limit} available jobs, marks them as {@link JobStatus#PROCESSING} and counts the attempt.
+     * A job whose lease expired on its last attempt is marked as {@link JobStatus#FAILED} instead of being claimed.
+     * The claim is visible to other consumers once the transaction commits.
+     */
+    List<JOB> claim(EntityManager em, int limit);
+
+    /**
+     * Deletes a job claimed by {@link #claim(EntityManager, int)}.
+     *
+     * @return false if the job is no longer claimed by this claim, e.g. because its lease expired
+     * and it has been claimed again
+     */
+    boolean ack(EntityManager em, JOB claimedJob);
+
+    /**
+     * Returns a job claimed by {@link #claim(EntityManager, int)} to the queue to be retried,
+     * or marks it as {@link JobStatus#FAILED} if it has no attempts left.
+     *
+     * @return false if the job is no longer claimed by this claim
+     */
+    boolean nack(EntityManager em, JOB claimedJob, String error);
+
+    /**
+     * Starts a consumer which claims jobs in batches and processes each job on its own virtual thread,
+     * with its own entity manager and transaction.
+     *
+     * @param concurrency the maximum number of jobs processed at the same time
+     */
+    JobConsumer startConsumer(EntityManagerFactory emf, JobHandler<JOB> handler, int concurrency);
+}
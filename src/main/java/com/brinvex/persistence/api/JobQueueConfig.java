@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+import java.time.Duration;
+
+/**
+ * @param channel       the PostgreSQL notification channel which wakes up idle consumers
+ * @param batchSize     the maximum number of jobs claimed by one statement
+ * @param maxAttempts   the number of attempts after which a job is marked as {@link JobStatus#FAILED}
+ * @param retryDelay    the delay before the first retry, each further retry is delayed by one more multiple of it
+ * @param leaseDuration how long a claimed job stays with its consumer before it can be claimed again
+ * @param pollInterval  how long an idle consumer waits for a notification before it looks for jobs anyway,
+ *                      e.g. for retries which became available; the only wake-up on other databases
+ */
+public record JobQueueConfig(
+        String channel,
+        int batchSize,
+        int maxAttempts,
+        Duration retryDelay,
+        Duration leaseDuration,
+        Duration pollInterval
+) {
+
+    public JobQueueConfig {
+        if (channel == null || channel.isBlank()) {
+            throw new IllegalArgumentException("Illegal channel: " + channel);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Illegal batchSize: " + batchSize);
+        }
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("Illegal maxAttempts: " + maxAttempts);
+        }
+        if (retryDelay == null || retryDelay.isNegative()) {
+            throw new IllegalArgumentException("Illegal retryDelay: " + retryDelay);
+        }
+        if (leaseDuration == null || !leaseDuration.isPositive()) {
+            throw new IllegalArgumentException("Illegal leaseDuration: " + leaseDuration);
+        }
+        if (pollInterval == null || pollInterval.toMillis() <= 0) {
+            throw new IllegalArgumentException("Illegal pollInterval: " + pollInterval);
+        }
+    }
+
+    public static JobQueueConfig of(String channel) {
+        return new JobQueueConfig(channel, 10, 5, Duration.ofSeconds(10), Duration.ofMinutes(5), Duration.ofSeconds(30));
+    }
+}
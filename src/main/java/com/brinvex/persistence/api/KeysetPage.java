@@ -0,0 +1,32 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+import java.util.List;
+
+/**
+ * One page of a keyset (seek) paginated query.
+ *
+ * @param results the rows of this page
+ * @param nextKey the key values of the last row of this page, to be passed as the last seen key
+ *                when fetching the next page; null if this is the last page
+ */
+public record KeysetPage<R>(List<R> results, List<Object> nextKey) {
+
+    public boolean hasNext() {
+        return nextKey != null;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+/**
+ * Entities loaded in {@link #READ_ONLY} mode are managed without a snapshot of their loaded state,
+ * so they are never dirty-checked at flush and their changes are not written to the database.
+ * Entities which were already managed before the load keep their current mode.
+ * In {@link #READ_WRITE} mode, the default read-only setting of the session applies.
+ */
+public enum QueryReadMode {
+
+    /**
+     * Default option
+     */
+    READ_WRITE,
+
+    READ_ONLY,
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+import com.brinvex.persistence.internal.QueryTemplateRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A parameterized criteria query defined once, typically as a {@code static final} field of a DAO class,
+ * and executed many times with different bind values.
+ * <p>
+ * The criteria query is built once per {@link EntityManagerFactory} and reused across entity managers
+ * until the factory is closed.
+ * Queries created from a template are marked as query-plan cacheable,
+ * so Hibernate translates the criteria tree to SQL only once.
+ * <p>
+ * Bind values are supplied through named parameters,
+ * declared in the definition with {@link CriteriaBuilder#parameter(Class, String)}.
+ * The definition must not depend on call-specific state.
+ * <p>
+ * The built criteria query is shared by all threads and entity managers of the factory, so it must not be modified,
+ * e.g. by {@link GeneralDao#count} or {@link GeneralDao#applySelections}, which set the selection of the given query.
+ * {@link GeneralDao#findPage} and {@link GeneralDao#findKeysetPage} work on a copy of the given query,
+ * so a template query can be passed to them.
+ */
+public final class QueryTemplate<R> {
+
+    @FunctionalInterface
+    public interface Definition<R> {
+        CriteriaQuery<R> define(CriteriaBuilder cb);
+    }
+
+    private final String name;
+
+    private final Definition<R> definition;
+
+    private QueryTemplate(String name, Definition<R> definition) {
+        this.name = requireNonNull(name, "Expecting non-null name");
+        this.definition = requireNonNull(definition, "Expecting non-null definition");
+    }
+
+    public static <R> QueryTemplate<R> of(String name, Definition<R> definition) {
+        return new QueryTemplate<>(name, definition);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public CriteriaQuery<R> criteriaQuery(EntityManagerFactory emf) {
+        return QueryTemplateRegistry.criteriaQuery(emf, this, definition);
+    }
+
+    @Override
+    public String toString() {
+        return "QueryTemplate[" + name + "]";
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+import com.brinvex.persistence.internal.SlowQueryLogImpl;
+
+import java.util.List;
+
+/**
+ * Records the {@link GeneralDao} operations which take at least a configured threshold,
+ * with the SQL they executed, their bind values and the DAO method which invoked them.
+ * <p>
+ * Installed as an interceptor:
+ * <pre>
+ * SlowQueryLog slowQueryLog = SlowQueryLog.create(SlowQueryLogConfig.of(Duration.ofMillis(500)));
+ * GeneralDao generalDao = GeneralDao.withInterceptors(GeneralDao.INSTANCE, List.of(slowQueryLog));
+ * </pre>
+ * Records are buffered in a bounded lock-free ring, so recording never blocks the thread which ran the operation.
+ * When the ring is full, the oldest records are overwritten and counted as dropped.
+ * The executed SQL is captured only while a slow query log is timing an operation on the current thread.
+ * <p>
+ * To capture the SQL, this library replaces the Hibernate {@code SqlStatementLogger} of every session factory,
+ * unless the factory is configured with {@link #CAPTURE_SQL_SETTING} set to {@code false}.
+ * With the setting off, the records contain no SQL
+ * and {@link StatementTracker}s count the statements without checking their repetitions.
+ */
+public interface SlowQueryLog extends GeneralDaoInterceptor, AutoCloseable {
+
+    String CAPTURE_SQL_SETTING = "com.brinvex.persistence.capture_sql";
+
+    static SlowQueryLog create(SlowQueryLogConfig config) {
+        return SlowQueryLogImpl.create(config);
+    }
+
+    SlowQueryLogConfig config();
+
+    /**
+     * Removes the buffered records and returns them, oldest first.
+     */
+    List<SlowQueryRecord> drain();
+
+    /**
+     * The number of records overwritten before they were drained
+     */
+    long droppedCount();
+
+    /**
+     * Stops the periodic logging, the records buffered at that moment are logged before it returns.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+import java.time.Duration;
+
+/**
+ * @param threshold        the elapsed time from which a {@link GeneralDao} operation is recorded
+ * @param capacity         the number of records buffered, the oldest records are overwritten when the buffer is full
+ * @param bindValueMasking how the bind values are rendered
+ * @param logInterval      how often the buffered records are drained and written to the
+ *                         {@code com.brinvex.persistence.SlowQueryLog} {@link System.Logger},
+ *                         null if the records are drained only by {@link SlowQueryLog#drain()}
+ */
+public record SlowQueryLogConfig(
+        Duration threshold,
+        int capacity,
+        BindValueMasking bindValueMasking,
+        Duration logInterval
+) {
+
+    public SlowQueryLogConfig {
+        if (threshold == null || threshold.isNegative()) {
+            throw new IllegalArgumentException("Illegal threshold: " + threshold);
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        if (bindValueMasking == null) {
+            bindValueMasking = BindValueMasking.MASK_ALL;
+        }
+        if (logInterval != null && logInterval.toMillis() <= 0) {
+            throw new IllegalArgumentException("Illegal logInterval: " + logInterval);
+        }
+    }
+
+    public static SlowQueryLogConfig of(Duration threshold) {
+        return new SlowQueryLogConfig(threshold, 1024, BindValueMasking.MASK_ALL, Duration.ofSeconds(1));
+    }
+}
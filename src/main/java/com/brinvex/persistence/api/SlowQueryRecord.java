@@ -0,0 +1,48 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A {@link GeneralDao} operation which took at least the {@link SlowQueryLogConfig#threshold()}.
+ *
+ * @param finishedAt   when the operation finished
+ * @param callerClass  the class which invoked the operation, typically a DAO, null if not found
+ * @param callerMethod the method which invoked the operation, null if not found
+ * @param operation    the name of the invoked {@link GeneralDao} method
+ * @param entityType   the entity type of the operation, null if not available
+ * @param sql          the SQL statements executed by the operation, in execution order
+ * @param bindValues   the bind values of the query, rendered according to {@link SlowQueryLogConfig#bindValueMasking()}
+ * @param rowCount     the number of results, see {@link GeneralDaoInvocation#resultSize(Object)}
+ * @param elapsed      the elapsed time of the operation
+ * @param failure      the type of the exception thrown by the operation, null if it succeeded
+ */
+public record SlowQueryRecord(
+        Instant finishedAt,
+        String callerClass,
+        String callerMethod,
+        String operation,
+        Class<?> entityType,
+        List<String> sql,
+        List<String> bindValues,
+        int rowCount,
+        Duration elapsed,
+        String failure
+) {
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Counterpart of {@link EntityDao} backed by a Hibernate {@link org.hibernate.StatelessSession}.
+ * Loaded entities are always detached, there is no dirty checking and no first-level cache,
+ * so every change must be written explicitly by {@link #update(Object)}.
+ */
+public interface StatelessEntityDao<ENTITY, ID extends Serializable> {
+
+    ENTITY getById(ID id);
+
+    List<ENTITY> findByIds(Collection<ID> ids);
+
+    void insert(ENTITY entity);
+
+    void insertAll(List<? extends ENTITY> entities);
+
+    void update(ENTITY entity);
+
+    void updateAll(List<? extends ENTITY> entities);
+
+    void delete(ENTITY entity);
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+/**
+ * The limits of a transaction tracked by {@link GeneralDao#trackStatements(jakarta.persistence.EntityManager, StatementBudget)}.
+ *
+ * @param maxStatements      the maximum number of SQL statements prepared in the transaction
+ * @param maxEntityLoads     the maximum number of entities loaded, by queries as well as by lazy proxies
+ * @param maxCollectionLoads the maximum number of collections initialized
+ * @param maxRepetitions     the maximum number of times one identical select statement may be executed,
+ *                           a higher count typically reveals an N+1 problem, e.g. lazy associations loaded in a loop
+ * @param mode               what happens when a limit is exceeded
+ */
+public record StatementBudget(
+        int maxStatements,
+        int maxEntityLoads,
+        int maxCollectionLoads,
+        int maxRepetitions,
+        StatementBudgetMode mode
+) {
+
+    public StatementBudget {
+        if (maxStatements <= 0) {
+            throw new IllegalArgumentException("Illegal maxStatements: " + maxStatements);
+        }
+        if (maxEntityLoads <= 0) {
+            throw new IllegalArgumentException("Illegal maxEntityLoads: " + maxEntityLoads);
+        }
+        if (maxCollectionLoads <= 0) {
+            throw new IllegalArgumentException("Illegal maxCollectionLoads: " + maxCollectionLoads);
+        }
+        if (maxRepetitions <= 0) {
+            throw new IllegalArgumentException("Illegal maxRepetitions: " + maxRepetitions);
+        }
+        if (mode == null) {
+            mode = StatementBudgetMode.WARN;
+        }
+    }
+
+    /**
+     * A budget which limits the statements and their repetitions, but not the loads
+     */
+    public static StatementBudget of(int maxStatements, int maxRepetitions, StatementBudgetMode mode) {
+        return new StatementBudget(maxStatements, Integer.MAX_VALUE, Integer.MAX_VALUE, maxRepetitions, mode);
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+/**
+ * What happens when a {@link StatementBudget} is exceeded.
+ * A {@link #WARN} is logged once per limit and transaction to the
+ * {@code com.brinvex.persistence.StatementTracker} {@link System.Logger}.
+ * A {@link #FAIL} throws a {@link jakarta.persistence.PersistenceException}
+ * from the statement or load which exceeded the budget.
+ */
+public enum StatementBudgetMode {
+
+    /**
+     * Default option
+     */
+    WARN,
+
+    FAIL,
+
+}
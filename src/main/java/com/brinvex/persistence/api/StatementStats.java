@@ -0,0 +1,34 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.api;
+
+/**
+ * The counts of a transaction tracked by {@link GeneralDao#trackStatements(jakarta.persistence.EntityManager, StatementBudget)}.
+ *
+ * @param statementCount             the SQL statements prepared
+ * @param entityLoadCount            the entities loaded
+ * @param collectionLoadCount        the collections initialized
+ * @param mostRepeatedStatement      the select statement executed most often, null if there was none
+ * @param mostRepeatedStatementCount how many times the most repeated statement was executed
+ */
+public record StatementStats(
+        int statementCount,
+        int entityLoadCount,
+        int collectionLoadCount,
+        String mostRepeatedStatement,
+        int mostRepeatedStatementCount
+) {
+}
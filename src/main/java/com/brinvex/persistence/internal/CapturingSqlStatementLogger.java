@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.internal;
+
+import org.hibernate.boot.registry.StandardServiceInitiator;
+import org.hibernate.engine.jdbc.internal.Formatter;
+import org.hibernate.engine.jdbc.internal.SqlStatementLoggerInitiator;
+import org.hibernate.engine.jdbc.spi.SqlStatementLogger;
+import org.hibernate.resource.jdbc.spi.JdbcSessionContext;
+import org.hibernate.service.spi.ServiceRegistryImplementor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hibernate passes every SQL statement it prepares to the {@link SqlStatementLogger} service,
+ * whether or not the statement is logged. This logger captures the statements prepared on the current thread
+ * between {@link #beginCapture()} and {@link #endCapture(List)} and delegates everything else
+ * to the logger Hibernate would have used otherwise. Installed by {@link PersistenceServiceContributor}.
+ * <p>
+ * That logger is created by {@link SqlStatementLoggerInitiator}, which is internal to Hibernate,
+ * so that {@code hibernate.show_sql} and the related settings keep their meaning.
+ * Its use has to be checked when upgrading Hibernate.
+ * <p>
+ * While any open session has been tracked by {@link StatementTrackerImpl}, it also remembers the last statement
+ * prepared on each thread, which the session listeners, notified right after, cannot see otherwise.
+ */
+final class CapturingSqlStatementLogger extends SqlStatementLogger {
+
+    static final StandardServiceInitiator<SqlStatementLogger> INITIATOR = new StandardServiceInitiator<>() {
+        @Override
+        public Class<SqlStatementLogger> getServiceInitiated() {
+            return SqlStatementLogger.class;
+        }
+
+        @Override
+        public SqlStatementLogger initiateService(Map<String, Object> configValues, ServiceRegistryImplementor registry) {
+            return new CapturingSqlStatementLogger(SqlStatementLoggerInitiator.INSTANCE.initiateService(configValues, registry));
+        }
+    };
+
+    /**
+     * Statements beyond this count are not captured, to bound the memory held by a long running operation
+     */
+    static final int MAX_CAPTURED_STATEMENTS = 64;
+
+    private static final ThreadLocal<List<String>> CAPTURED_STATEMENTS = new ThreadLocal<>();
+
+    private static final ThreadLocal<String> LAST_STATEMENT = new ThreadLocal<>();
+
+    private final SqlStatementLogger delegate;
+
+    private CapturingSqlStatementLogger(SqlStatementLogger delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Starts capturing the statements prepared on the current thread.
+     *
+     * @return the statements of an enclosing capture, to be passed to {@link #endCapture(List)}
+     */
+    static List<String> beginCapture() {
+        List<String> enclosing = CAPTURED_STATEMENTS.get();
+        CAPTURED_STATEMENTS.set(new ArrayList<>());
+        return enclosing;
+    }
+
+    /**
+     * Stops capturing and returns the captured statements, which are also added to the enclosing capture.
+     */
+    static List<String> endCapture(List<String> enclosing) {
+        List<String> captured = CAPTURED_STATEMENTS.get();
+        if (enclosing == null) {
+            CAPTURED_STATEMENTS.remove();
+        } else {
+            CAPTURED_STATEMENTS.set(enclosing);
+            if (captured != null) {
+                captured.forEach(CapturingSqlStatementLogger::capture);
+            }
+        }
+        return captured == null ? List.of() : List.copyOf(captured);
+    }
+
+    /**
+     * Removes and returns the last statement prepared on the current thread,
+     * null if no session was tracked at that moment
+     */
+    static String takeLastStatement() {
+        String sql = LAST_STATEMENT.get();
+        LAST_STATEMENT.remove();
+        return sql;
+    }
+
+    /**
+     * Logs and captures a statement executed directly on the JDBC connection, bypassing the session,
+     * without making it the last statement seen by the session listeners.
+     */
+    static void logSideStatement(SqlStatementLogger logger, String sql) {
+        if (logger instanceof CapturingSqlStatementLogger capturingLogger) {
+            capture(sql);
+            capturingLogger.delegate.logStatement(sql);
+        } else {
+            logger.logStatement(sql);
+        }
+    }
+
+    private static void onStatement(String sql) {
+        capture(sql);
+        if (StatementTrackerImpl.isTrackingAny()) {
+            LAST_STATEMENT.set(sql);
+        }
+    }
+
+    private static void capture(String sql) {
+        List<String> captured = CAPTURED_STATEMENTS.get();
+        if (captured != null && captured.size() < MAX_CAPTURED_STATEMENTS) {
+            captured.add(sql);
+        }
+    }
+
+    @Override
+    public boolean isLogToStdout() {
+        return delegate.isLogToStdout();
+    }
+
+    @Override
+    public boolean isFormat() {
+        return delegate.isFormat();
+    }
+
+    @Override
+    public long getLogSlowQuery() {
+        return delegate.getLogSlowQuery();
+    }
+
+    @Override
+    public void logStatement(String statement) {
+        onStatement(statement);
+        delegate.logStatement(statement);
+    }
+
+    @Override
+    public void logStatement(String statement, Formatter formatter) {
+        onStatement(statement);
+        delegate.logStatement(statement, formatter);
+    }
+
+    @Override
+    public void logSlowQuery(String sql, long startTimeNanos, JdbcSessionContext context) {
+        delegate.logSlowQuery(sql, startTimeNanos, context);
+    }
+}
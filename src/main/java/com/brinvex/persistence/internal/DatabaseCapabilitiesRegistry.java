@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.internal;
+
+import com.brinvex.persistence.api.DatabaseCapabilities;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.Timeouts;
+import org.hibernate.dialect.Database;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.dialect.SQLServerDialect;
+import org.hibernate.dialect.lock.spi.LockTimeoutType;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link DatabaseCapabilities} of each open session factory.
+ * Entries are registered by {@link PersistenceIntegrator} when a factory has been built and removed when it is closed.
+ */
+final class DatabaseCapabilitiesRegistry {
+
+    private static final int POSTGRESQL_MAX_BIND_PARAMETERS = 65_535;
+
+    private static final int SQLSERVER_MAX_BIND_PARAMETERS = 2_100;
+
+    private static final Map<SessionFactoryImplementor, DatabaseCapabilities> SF_2_CAPABILITIES = new ConcurrentHashMap<>();
+
+    private DatabaseCapabilitiesRegistry() {
+    }
+
+    static DatabaseCapabilities get(SessionFactoryImplementor sessionFactory) {
+        DatabaseCapabilities capabilities = SF_2_CAPABILITIES.get(sessionFactory);
+        if (capabilities == null) {
+            //The integrator was not discovered, e.g. due to a custom class loading setup
+            capabilities = SF_2_CAPABILITIES.computeIfAbsent(sessionFactory, sf -> {
+                sf.addObserver(new SessionFactoryObserver() {
+                    @Override
+                    public void sessionFactoryClosed(SessionFactory factory) {
+                        unregister(sf);
+                    }
+                });
+                return resolve(sf.getJdbcServices().getDialect());
+            });
+        }
+        return capabilities;
+    }
+
+    static void register(SessionFactoryImplementor sessionFactory) {
+        SF_2_CAPABILITIES.put(sessionFactory, resolve(sessionFactory.getJdbcServices().getDialect()));
+    }
+
+    static void unregister(SessionFactoryImplementor sessionFactory) {
+        SF_2_CAPABILITIES.remove(sessionFactory);
+    }
+
+    static Database detectDatabase(Dialect dialect) {
+        if (dialect instanceof PostgreSQLDialect) {
+            return Database.POSTGRESQL;
+        } else if (dialect instanceof SQLServerDialect) {
+            return Database.SQLSERVER;
+        } else {
+            return null;
+        }
+    }
+
+    private static DatabaseCapabilities resolve(Dialect dialect) {
+        Database database = detectDatabase(dialect);
+        //SKIP LOCKED is rendered into the query itself, not applied as a connection setting
+        boolean skipLocked = dialect.getLockingSupport().getMetadata().getLockTimeoutType(Timeouts.SKIP_LOCKED) == LockTimeoutType.QUERY;
+        if (database == null) {
+            return new DatabaseCapabilities(
+                    null, dialect.getVersion(), Math.max(0, dialect.getParameterCountLimit()), false, skipLocked, false);
+        }
+        return switch (database) {
+            case POSTGRESQL -> new DatabaseCapabilities(
+                    database, dialect.getVersion(), POSTGRESQL_MAX_BIND_PARAMETERS, true, skipLocked, true);
+            case SQLSERVER -> new DatabaseCapabilities(
+                    database, dialect.getVersion(), SQLSERVER_MAX_BIND_PARAMETERS, false, skipLocked, true);
+            default -> new DatabaseCapabilities(
+                    database, dialect.getVersion(), Math.max(0, dialect.getParameterCountLimit()), false, skipLocked, false);
+        };
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.internal;
+
+import com.brinvex.persistence.api.EntityMetadata;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metamodel.mapping.AttributeMapping;
+import org.hibernate.metamodel.mapping.NaturalIdMapping;
+import org.hibernate.metamodel.mapping.SelectableMapping;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link EntityMetadata} and {@link EntityTableMapping} of every entity of each open session factory.
+ * Entries are registered by {@link PersistenceIntegrator} when a factory has been built and removed when it is closed,
+ * so the request path only does map lookups.
+ */
+final class EntityMetadataRegistry {
+
+    private record Entry(EntityMetadata<?> metadata, EntityTableMapping tableMapping, String tableMappingError) {
+    }
+
+    private static final Map<SessionFactoryImplementor, Map<Class<?>, Entry>> SF_2_ENTITIES = new ConcurrentHashMap<>();
+
+    private EntityMetadataRegistry() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <ENTITY> EntityMetadata<ENTITY> metadata(SessionFactoryImplementor sessionFactory, Class<ENTITY> entityType) {
+        return (EntityMetadata<ENTITY>) entry(sessionFactory, entityType).metadata();
+    }
+
+    static EntityTableMapping tableMapping(SessionFactoryImplementor sessionFactory, Class<?> entityType) {
+        Entry entry = entry(sessionFactory, entityType);
+        if (entry.tableMapping() == null) {
+            throw new IllegalArgumentException(entry.tableMappingError());
+        }
+        return entry.tableMapping();
+    }
+
+    private static Entry entry(SessionFactoryImplementor sessionFactory, Class<?> entityType) {
+        Map<Class<?>, Entry> entities = SF_2_ENTITIES.get(sessionFactory);
+        if (entities == null) {
+            //The integrator was not discovered, e.g. due to a custom class loading setup
+            entities = SF_2_ENTITIES.computeIfAbsent(sessionFactory, sf -> {
+                sf.addObserver(new SessionFactoryObserver() {
+                    @Override
+                    public void sessionFactoryClosed(SessionFactory factory) {
+                        unregister(sf);
+                    }
+                });
+                return build(sf);
+            });
+        }
+        Entry entry = entities.get(entityType);
+        if (entry == null) {
+            throw new IllegalArgumentException("Not an entity: " + entityType);
+        }
+        return entry;
+    }
+
+    static void register(SessionFactoryImplementor sessionFactory) {
+        SF_2_ENTITIES.put(sessionFactory, build(sessionFactory));
+    }
+
+    static void unregister(SessionFactoryImplementor sessionFactory) {
+        SF_2_ENTITIES.remove(sessionFactory);
+    }
+
+    private static Map<Class<?>, Entry> build(SessionFactoryImplementor sessionFactory) {
+        Map<Class<?>, Entry> entities = new HashMap<>();
+        sessionFactory.getMappingMetamodel().forEachEntityDescriptor(persister -> {
+            Class<?> entityType = persister.getMappedClass();
+            if (entityType != null && !Map.class.equals(entityType)) {
+                entities.put(entityType, createEntry(sessionFactory, persister, entityType));
+            }
+        });
+        return Map.copyOf(entities);
+    }
+
+    private static <ENTITY> Entry createEntry(
+            SessionFactoryImplementor sessionFactory,
+            EntityPersister persister,
+            Class<ENTITY> entityType
+    ) {
+        EntityType<ENTITY> jpaEntityType = sessionFactory.getJpaMetamodel().entity(entityType);
+        SingularAttribute<? super ENTITY, ?> idAttribute = null;
+        SingularAttribute<? super ENTITY, ?> versionAttribute = null;
+        if (jpaEntityType.hasSingleIdAttribute()) {
+            idAttribute = jpaEntityType.getId(jpaEntityType.getIdType().getJavaType());
+        }
+        for (SingularAttribute<? super ENTITY, ?> attribute : jpaEntityType.getSingularAttributes()) {
+            if (attribute.isVersion()) {
+                versionAttribute = attribute;
+            }
+        }
+        List<SingularAttribute<? super ENTITY, ?>> naturalIdAttributes = new ArrayList<>();
+        NaturalIdMapping naturalIdMapping = persister.getNaturalIdMapping();
+        if (naturalIdMapping != null) {
+            for (AttributeMapping attribute : naturalIdMapping.getNaturalIdAttributes()) {
+                naturalIdAttributes.add(jpaEntityType.getSingularAttribute(attribute.getAttributeName()));
+            }
+        }
+
+        String tableName = persister.getIdentifierTableDetails().getTableName();
+        List<String> idColumnNames = new ArrayList<>();
+        List<String> columnNames = new ArrayList<>();
+        persister.getIdentifierMapping().forEachSelectable((_, column) -> {
+            idColumnNames.add(column.getSelectionExpression());
+            columnNames.add(column.getSelectionExpression());
+        });
+        persister.forEachAttributeMapping(attribute -> {
+            if (!attribute.isPluralAttributeMapping()) {
+                attribute.forEachSelectable((_, column) -> {
+                    if (isInsertedInto(column, tableName)) {
+                        columnNames.add(column.getSelectionExpression());
+                    }
+                });
+            }
+        });
+
+        EntityMetadata<ENTITY> metadata = new EntityMetadata<>(
+                entityType,
+                idAttribute,
+                versionAttribute,
+                tableName,
+                List.copyOf(idColumnNames),
+                List.copyOf(columnNames),
+                List.copyOf(naturalIdAttributes)
+        );
+        try {
+            return new Entry(metadata, EntityTableMapping.create(persister), null);
+        } catch (IllegalArgumentException e) {
+            //Reported only when an operation needing the table mapping is used
+            return new Entry(metadata, null, e.getMessage());
+        }
+    }
+
+    private static boolean isInsertedInto(SelectableMapping column, String tableName) {
+        return !column.isFormula() && column.isInsertable() && tableName.equals(column.getContainingTableExpression());
+    }
+}
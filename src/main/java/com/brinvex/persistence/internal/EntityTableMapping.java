@@ -0,0 +1,230 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.internal;
+
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.hibernate.engine.internal.Versioning;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.Generator;
+import org.hibernate.metamodel.mapping.AttributeMapping;
+import org.hibernate.metamodel.mapping.BasicEntityIdentifierMapping;
+import org.hibernate.metamodel.mapping.EntityVersionMapping;
+import org.hibernate.metamodel.mapping.ModelPart;
+import org.hibernate.metamodel.mapping.SelectableMapping;
+import org.hibernate.metamodel.mapping.internal.BasicAttributeMapping;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import static java.lang.String.format;
+
+/**
+ * The insertable columns of a single-table entity in the order in which
+ * {@link #forEachColumnValue(Object, SharedSessionContractImplementor, BiConsumer)} produces their values.
+ * Used by the statements which write entity rows without going through the persistence context.
+ */
+final class EntityTableMapping {
+
+    private final EntityPersister persister;
+
+    private final String tableName;
+
+    private final List<SelectableMapping> columns;
+
+    private final List<AttributeMapping> attributes;
+
+    private EntityTableMapping(
+            EntityPersister persister,
+            String tableName,
+            List<SelectableMapping> columns,
+            List<AttributeMapping> attributes
+    ) {
+        this.persister = persister;
+        this.tableName = tableName;
+        this.columns = columns;
+        this.attributes = attributes;
+    }
+
+    static EntityTableMapping of(SharedSessionContractImplementor session, Class<?> entityType) {
+        return EntityMetadataRegistry.tableMapping(session.getFactory(), entityType);
+    }
+
+    static EntityTableMapping create(EntityPersister persister) {
+        if (persister.isInherited() || persister.hasSubclasses()) {
+            throw new IllegalArgumentException("Entity inheritance is not supported: " + persister.getEntityName());
+        }
+        String tableName = persister.getIdentifierTableDetails().getTableName();
+        List<SelectableMapping> columns = new ArrayList<>();
+        persister.getIdentifierMapping().forEachSelectable((_, column) -> {
+            if (isWritten(column, tableName)) {
+                columns.add(column);
+            }
+        });
+        List<AttributeMapping> attributes = new ArrayList<>();
+        persister.forEachAttributeMapping(attribute -> {
+            if (!attribute.isPluralAttributeMapping()) {
+                attributes.add(attribute);
+                attribute.forEachSelectable((_, column) -> {
+                    if (isWritten(column, tableName)) {
+                        columns.add(column);
+                    }
+                });
+            }
+        });
+        return new EntityTableMapping(persister, tableName, List.copyOf(columns), List.copyOf(attributes));
+    }
+
+    String tableName() {
+        return tableName;
+    }
+
+    List<SelectableMapping> columns() {
+        return columns;
+    }
+
+    List<String> columnNames() {
+        return columns.stream().map(SelectableMapping::getSelectionExpression).toList();
+    }
+
+    SelectableMapping column(String columnName) {
+        for (SelectableMapping column : columns) {
+            if (column.getSelectionExpression().equals(columnName)) {
+                return column;
+            }
+        }
+        throw new IllegalArgumentException(format("Column %s does not belong to %s", columnName, tableName));
+    }
+
+    /**
+     * The id column of an entity with a single-column id.
+     */
+    BasicEntityIdentifierMapping idColumn() {
+        if (!(persister.getIdentifierMapping() instanceof BasicEntityIdentifierMapping idMapping)) {
+            throw new IllegalArgumentException("Composite ids are not supported: " + persister.getEntityName());
+        }
+        return idMapping;
+    }
+
+    SelectableMapping versionColumn() {
+        EntityVersionMapping versionMapping = persister.getVersionMapping();
+        return versionMapping == null ? null : versionMapping.getVersionAttribute();
+    }
+
+    Set<String> idColumnNames() {
+        List<String> idColumnNames = new ArrayList<>();
+        persister.getIdentifierMapping().forEachSelectable((_, column) -> idColumnNames.add(column.getSelectionExpression()));
+        return Set.copyOf(idColumnNames);
+    }
+
+    List<String> columnNames(List<? extends SingularAttribute<?, ?>> attributes) {
+        List<String> columnNames = new ArrayList<>();
+        for (SingularAttribute<?, ?> attribute : attributes) {
+            ModelPart modelPart = attribute.isId()
+                    ? persister.getIdentifierMapping()
+                    : persister.findAttributeMapping(attribute.getName());
+            if (modelPart == null) {
+                throw new IllegalArgumentException(format(
+                        "Attribute %s does not belong to %s", attribute.getName(), persister.getEntityName()));
+            }
+            modelPart.forEachSelectable((_, column) -> columnNames.add(column.getSelectionExpression()));
+        }
+        return columnNames.stream().distinct().toList();
+    }
+
+    /**
+     * Assigns a generated id if the entity has none and seeds its version if it is null or negative,
+     * as Hibernate does when persisting an entity.
+     */
+    void prepareForInsert(Object entity, SharedSessionContractImplementor session) {
+        if (entity == null) {
+            throw new IllegalArgumentException("Required non-null entity");
+        }
+        Object id = persister.getIdentifier(entity, session);
+        if (id == null) {
+            Generator generator = persister.getGenerator();
+            if (!(generator instanceof BeforeExecutionGenerator beforeExecutionGenerator)
+                || generator.generatedOnExecution(entity, session)) {
+                throw new IllegalArgumentException(
+                        "Ids generated on insert (e.g. IDENTITY) are not supported: " + persister.getEntityName());
+            }
+            //Sequence based generators hand out pre-allocated values according to their optimizer
+            id = beforeExecutionGenerator.generate(session, entity, null, EventType.INSERT);
+            persister.setIdentifier(entity, id, session);
+        }
+        if (persister.isVersioned()) {
+            EntityVersionMapping versionMapping = persister.getVersionMapping();
+            AttributeMapping versionAttribute = versionMapping.getVersionAttribute();
+            if (Versioning.isNullInitialVersion(versionAttribute.getValue(entity))) {
+                versionAttribute.setValue(entity, Versioning.seed(versionMapping, session));
+            }
+        }
+    }
+
+    /**
+     * Sets the id and the version, given as JDBC values, which the row of the entity has in the database.
+     */
+    void setIdAndVersion(
+            Object entity,
+            Object idJdbcValue,
+            Object versionJdbcValue,
+            SharedSessionContractImplementor session
+    ) {
+        persister.setIdentifier(entity, idColumn().getJdbcMapping().convertToDomainValue(idJdbcValue), session);
+        EntityVersionMapping versionMapping = persister.getVersionMapping();
+        if (versionMapping != null) {
+            BasicAttributeMapping versionAttribute = versionMapping.getVersionAttribute();
+            versionAttribute.setValue(entity, versionAttribute.getJdbcMapping().convertToDomainValue(versionJdbcValue));
+        }
+    }
+
+    /**
+     * Passes the JDBC values of the entity to the consumer in the order of {@link #columns()}.
+     */
+    void forEachColumnValue(
+            Object entity,
+            SharedSessionContractImplementor session,
+            BiConsumer<Object, SelectableMapping> consumer
+    ) {
+        persister.getIdentifierMapping().decompose(persister.getIdentifier(entity, session), (_, value, column) -> {
+            if (isWritten(column, tableName)) {
+                consumer.accept(value, column);
+            }
+        }, session);
+        for (AttributeMapping attribute : attributes) {
+            attribute.decompose(attribute.getValue(entity), (_, value, column) -> {
+                if (isWritten(column, tableName)) {
+                    consumer.accept(value, column);
+                }
+            }, session);
+        }
+    }
+
+    private static boolean isWritten(SelectableMapping column, String tableName) {
+        if (column.isFormula() || !column.isInsertable()) {
+            return false;
+        }
+        if (!tableName.equals(column.getContainingTableExpression())) {
+            throw new IllegalArgumentException(
+                    "Secondary tables are not supported: " + column.getContainingTableExpression());
+        }
+        return true;
+    }
+}
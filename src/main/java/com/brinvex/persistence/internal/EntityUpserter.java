@@ -0,0 +1,293 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.internal;
+
+import com.brinvex.persistence.api.DatabaseCapabilities;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.hibernate.dialect.Database;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.metamodel.mapping.SelectableMapping;
+import org.hibernate.type.descriptor.java.JavaType;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+import static java.lang.String.format;
+import static java.util.Collections.nCopies;
+
+/**
+ * Writes entities by multi-row upsert statements,
+ * {@code INSERT ... ON CONFLICT ... DO UPDATE} on PostgreSQL and {@code MERGE} on SQL Server.
+ * The statements return the key, the id and the version of each written row,
+ * so that the entities are updated with the id and the version their row has in the database.
+ */
+final class EntityUpserter {
+
+    private EntityUpserter() {
+    }
+
+    static long upsert(
+            SessionImplementor session,
+            DatabaseCapabilities capabilities,
+            Class<?> entityType,
+            Collection<?> entities,
+            List<? extends SingularAttribute<?, ?>> conflictKey,
+            int batchSize
+    ) {
+        EntityTableMapping tableMapping = EntityTableMapping.of(session, entityType);
+        List<String> columnNames = tableMapping.columnNames();
+        List<String> keyColumnNames = tableMapping.columnNames(conflictKey);
+        String idColumnName = tableMapping.idColumn().getSelectionExpression();
+        Set<String> idColumnNames = tableMapping.idColumnNames();
+        SelectableMapping versionColumn = tableMapping.versionColumn();
+        String versionColumnName = versionColumn == null ? null : versionColumn.getSelectionExpression();
+
+        //The key identifies the row to update, the id of an existing row is kept
+        //and the version of an existing row is incremented instead of being overwritten
+        List<String> updatedColumnNames = columnNames
+                .stream()
+                .filter(c -> !keyColumnNames.contains(c) && !idColumnNames.contains(c) && !c.equals(versionColumnName))
+                .toList();
+        List<String> returnedColumnNames = new ArrayList<>(keyColumnNames);
+        returnedColumnNames.add(idColumnName);
+        if (versionColumnName != null) {
+            returnedColumnNames.add(versionColumnName);
+        }
+        UpsertColumns upsertColumns = new UpsertColumns(
+                keyColumnNames, updatedColumnNames, versionColumnName, List.copyOf(returnedColumnNames));
+
+        Database database = capabilities.database();
+        int maxParameters;
+        if (database == Database.POSTGRESQL) {
+            maxParameters = capabilities.maxBindParameters();
+        } else if (database == Database.SQLSERVER) {
+            maxParameters = capabilities.maxBindParameters() - 1;
+        } else {
+            throw new IllegalStateException("Upsert is supported only on PostgreSQL and SQL Server, but got " + database);
+        }
+        int rowsPerStatement = Math.max(1, Math.min(batchSize, maxParameters / columnNames.size()));
+
+        long affectedRows = 0;
+        List<Object> chunk = new ArrayList<>(Math.min(rowsPerStatement, entities.size()));
+        for (Object entity : entities) {
+            tableMapping.prepareForInsert(entity, session);
+            chunk.add(entity);
+            if (chunk.size() == rowsPerStatement) {
+                affectedRows += execute(session, database, tableMapping, upsertColumns, chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            affectedRows += execute(session, database, tableMapping, upsertColumns, chunk);
+        }
+        return affectedRows;
+    }
+
+    /**
+     * The column names an upsert statement is built of
+     *
+     * @param returnedColumnNames the key columns, the id column and the version column, if any
+     */
+    private record UpsertColumns(
+            List<String> keyColumnNames,
+            List<String> updatedColumnNames,
+            String versionColumnName,
+            List<String> returnedColumnNames
+    ) {
+    }
+
+    private static int execute(
+            SessionImplementor session,
+            Database database,
+            EntityTableMapping tableMapping,
+            UpsertColumns upsertColumns,
+            List<Object> entities
+    ) {
+        String sql = switch (database) {
+            case POSTGRESQL -> postgresqlUpsert(tableMapping, upsertColumns, entities.size());
+            case SQLSERVER -> sqlServerMerge(tableMapping, upsertColumns, entities.size());
+            default -> throw new IllegalStateException("Unsupported database: " + database);
+        };
+        List<String> keyColumnNames = upsertColumns.keyColumnNames();
+        List<SelectableMapping> returnedColumns = upsertColumns.returnedColumnNames()
+                .stream()
+                .map(tableMapping::column)
+                .toList();
+        int keySize = keyColumnNames.size();
+        return session.doReturningWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                Map<List<Object>, Object> entitiesByKey = new HashMap<>();
+                int[] parameterIndex = {0};
+                for (Object entity : entities) {
+                    Object[] key = new Object[keySize];
+                    tableMapping.forEachColumnValue(entity, session, (value, column) -> {
+                        try {
+                            column.getJdbcMapping().getJdbcValueBinder().bind(ps, value, ++parameterIndex[0], session);
+                        } catch (SQLException e) {
+                            throw session.getJdbcServices().getSqlExceptionHelper().convert(e, "Could not bind upsert parameter", sql);
+                        }
+                        int keyIndex = keyColumnNames.indexOf(column.getSelectionExpression());
+                        if (keyIndex >= 0) {
+                            key[keyIndex] = value;
+                        }
+                    });
+                    entitiesByKey.put(Arrays.asList(key), entity);
+                }
+                int rowCount = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Object[] row = new Object[returnedColumns.size()];
+                        for (int i = 0; i < row.length; i++) {
+                            row[i] = returnedColumns.get(i).getJdbcMapping().getJdbcValueExtractor().extract(rs, i + 1, session);
+                        }
+                        List<Object> key = Arrays.asList(row).subList(0, keySize);
+                        Object entity = removeByKey(entitiesByKey, key, returnedColumns);
+                        tableMapping.setIdAndVersion(entity, row[keySize], row.length > keySize + 1 ? row[keySize + 1] : null, session);
+                        rowCount++;
+                    }
+                }
+                return rowCount;
+            }
+        });
+    }
+
+    private static Object removeByKey(Map<List<Object>, Object> entitiesByKey, List<Object> key, List<SelectableMapping> keyColumns) {
+        Object entity = entitiesByKey.remove(key);
+        if (entity != null) {
+            return entity;
+        }
+        //The database may return a value which is equal but not equals(), e.g. a BigDecimal of another scale
+        for (Iterator<Map.Entry<List<Object>, Object>> it = entitiesByKey.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<List<Object>, Object> entry = it.next();
+            if (keysEqual(entry.getKey(), key, keyColumns)) {
+                it.remove();
+                return entry.getValue();
+            }
+        }
+        throw new IllegalStateException("Upserted row does not match any entity, key=" + key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean keysEqual(List<Object> key1, List<Object> key2, List<SelectableMapping> keyColumns) {
+        for (int i = 0; i < key1.size(); i++) {
+            JavaType<Object> javaType = (JavaType<Object>) keyColumns.get(i).getJdbcMapping().getJdbcJavaType();
+            if (!javaType.areEqual(key1.get(i), key2.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <pre>
+     * insert into t as tgt (c1, c2, ...) values (?, ?, ...), (?, ?, ...)
+     * on conflict (k1, ...) do update set c2 = excluded.c2, ..., version = tgt.version + 1
+     * returning k1, ..., id, version
+     * </pre>
+     */
+    private static String postgresqlUpsert(EntityTableMapping tableMapping, UpsertColumns upsertColumns, int rowCount) {
+        List<String> keyColumnNames = upsertColumns.keyColumnNames();
+        String versionColumnName = upsertColumns.versionColumnName();
+        StringBuilder sql = new StringBuilder()
+                .append("insert into ").append(tableMapping.tableName()).append(" as tgt")
+                .append(" (").append(String.join(", ", tableMapping.columnNames())).append(") values ")
+                .append(valueRows(tableMapping.columnNames().size(), rowCount))
+                .append(" on conflict (").append(String.join(", ", keyColumnNames)).append(")");
+
+        StringJoiner assignments = new StringJoiner(", ");
+        for (String c : upsertColumns.updatedColumnNames()) {
+            assignments.add(format("%s = excluded.%s", c, c));
+        }
+        if (versionColumnName != null) {
+            assignments.add(format("%s = tgt.%s + 1", versionColumnName, versionColumnName));
+        }
+        if (assignments.length() == 0) {
+            //DO NOTHING would not return the existing rows
+            String k = keyColumnNames.getFirst();
+            assignments.add(format("%s = excluded.%s", k, k));
+        }
+        sql.append(" do update set ").append(assignments);
+        sql.append(" returning ").append(String.join(", ", upsertColumns.returnedColumnNames()));
+        return sql.toString();
+    }
+
+    /**
+     * <pre>
+     * merge into t with (holdlock) as tgt
+     * using (values (?, ?, ...), (?, ?, ...)) as src (c1, c2, ...)
+     * on tgt.k1 = src.k1 and ...
+     * when matched then update set tgt.c2 = src.c2, ..., tgt.version = tgt.version + 1
+     * when not matched then insert (c1, c2, ...) values (src.c1, src.c2, ...)
+     * output inserted.k1, ..., inserted.id, inserted.version;
+     * </pre>
+     */
+    private static String sqlServerMerge(EntityTableMapping tableMapping, UpsertColumns upsertColumns, int rowCount) {
+        List<String> columnNames = tableMapping.columnNames();
+        String versionColumnName = upsertColumns.versionColumnName();
+        StringBuilder sql = new StringBuilder()
+                .append("merge into ").append(tableMapping.tableName()).append(" with (holdlock) as tgt")
+                .append(" using (values ").append(valueRows(columnNames.size(), rowCount)).append(")")
+                .append(" as src (").append(String.join(", ", columnNames)).append(")");
+
+        StringJoiner keyConditions = new StringJoiner(" and ", " on ", "");
+        for (String k : upsertColumns.keyColumnNames()) {
+            keyConditions.add(format("tgt.%s = src.%s", k, k));
+        }
+        sql.append(keyConditions);
+
+        StringJoiner assignments = new StringJoiner(", ");
+        for (String c : upsertColumns.updatedColumnNames()) {
+            assignments.add(format("tgt.%s = src.%s", c, c));
+        }
+        if (versionColumnName != null) {
+            assignments.add(format("tgt.%s = tgt.%s + 1", versionColumnName, versionColumnName));
+        }
+        if (assignments.length() == 0) {
+            //Unmatched clauses would not output the existing rows
+            String k = upsertColumns.keyColumnNames().getFirst();
+            assignments.add(format("tgt.%s = src.%s", k, k));
+        }
+        sql.append(" when matched then update set ").append(assignments);
+
+        StringJoiner sourceColumns = new StringJoiner(", ");
+        for (String c : columnNames) {
+            sourceColumns.add("src." + c);
+        }
+        StringJoiner outputColumns = new StringJoiner(", ");
+        for (String c : upsertColumns.returnedColumnNames()) {
+            outputColumns.add("inserted." + c);
+        }
+        sql.append(" when not matched then insert (").append(String.join(", ", columnNames)).append(")")
+                .append(" values (").append(sourceColumns).append(")")
+                .append(" output ").append(outputColumns).append(";");
+        return sql.toString();
+    }
+
+    private static String valueRows(int columnCount, int rowCount) {
+        String row = "(" + String.join(", ", nCopies(columnCount, "?")) + ")";
+        return String.join(", ", nCopies(rowCount, row));
+    }
+}
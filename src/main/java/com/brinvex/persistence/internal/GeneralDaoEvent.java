@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.internal;
+
+import com.brinvex.persistence.api.QueryCacheMode;
+import jakarta.persistence.criteria.AbstractQuery;
+import jakarta.persistence.criteria.CommonAbstractCriteria;
+import jakarta.persistence.criteria.CriteriaDelete;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.time.Duration;
+
+/**
+ * A JFR event emitted by {@link GeneralDaoImpl} for each statement of a query or a bulk write,
+ * for each load by id or ids, persist, merge, remove, flush and stream,
+ * and for the same operations of a {@link org.hibernate.StatelessSession}.
+ * The duration of a locking read includes the wait for the lock.
+ * Instrumented operations check {@link #enabled()} before anything else,
+ * so with no recording (or with the event disabled) they allocate nothing extra.
+ */
+@Name(GeneralDaoEvent.NAME)
+@Label("General DAO Operation")
+@Category({"Brinvex", "Persistence"})
+@Description("An operation of GeneralDao which hit the database")
+final class GeneralDaoEvent extends Event {
+
+    static final String NAME = "com.brinvex.persistence.GeneralDao";
+
+    private static final EventType TYPE = EventType.getEventType(GeneralDaoEvent.class);
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Entity Type")
+    Class<?> entityType;
+
+    @Label("Rows")
+    @Description("Rows returned by a read, affected by a bulk write or written by persist and merge")
+    long rowCount;
+
+    @Label("Cache Mode")
+    String cacheMode;
+
+    @Label("Lock Timeout")
+    @Description("Lock timeout of a locking read, zero if none was set")
+    @Timespan(Timespan.MILLISECONDS)
+    long lockTimeout;
+
+    @Label("Failure")
+    String failure;
+
+    private GeneralDaoEvent() {
+    }
+
+    static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+
+    /**
+     * @return a begun event, or null if the event is not enabled
+     */
+    static GeneralDaoEvent beginIfEnabled() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        GeneralDaoEvent event = new GeneralDaoEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @param source the entity type or the criteria query whose root determines the entity type
+     */
+    void commit(String operation, Object source, long rowCount, QueryCacheMode cacheMode, Duration lockTimeout) {
+        this.operation = operation;
+        this.entityType = entityType(source);
+        this.rowCount = rowCount;
+        this.cacheMode = cacheMode == null ? null : cacheMode.name();
+        this.lockTimeout = lockTimeout == null ? 0 : lockTimeout.toMillis();
+        commit();
+    }
+
+    GeneralDaoEvent failedWith(RuntimeException failure) {
+        this.failure = failure.getClass().getName();
+        return this;
+    }
+
+    static Class<?> entityType(Object source) {
+        return switch (source) {
+            case Class<?> type -> type;
+            case AbstractQuery<?> q when !q.getRoots().isEmpty() -> q.getRoots().iterator().next().getJavaType();
+            case CriteriaUpdate<?> q -> q.getRoot().getJavaType();
+            case CriteriaDelete<?> q -> q.getRoot().getJavaType();
+            case null, default -> null;
+        };
+    }
+}
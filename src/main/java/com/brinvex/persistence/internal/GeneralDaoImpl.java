@@ -15,48 +15,99 @@
  */
 package com.brinvex.persistence.internal;
 
+import com.brinvex.persistence.api.BatchWriteStats;
+import com.brinvex.persistence.api.ChunkCompletionMode;
+import com.brinvex.persistence.api.DatabaseCapabilities;
+import com.brinvex.persistence.api.EntityMetadata;
 import com.brinvex.persistence.api.GeneralDao;
 import com.brinvex.persistence.api.Filter;
+import com.brinvex.persistence.api.InListPadding;
+import com.brinvex.persistence.api.KeysetPage;
+import com.brinvex.persistence.api.PageWithTotal;
 import com.brinvex.persistence.api.QueryCacheMode;
+import com.brinvex.persistence.api.QueryReadMode;
+import com.brinvex.persistence.api.QueryTemplate;
+import com.brinvex.persistence.api.ResultOrderMode;
+import com.brinvex.persistence.api.Slice;
+import com.brinvex.persistence.api.StatementBudget;
+import com.brinvex.persistence.api.StatementTracker;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityTransaction;
 import jakarta.persistence.LockModeType;
 import jakarta.persistence.OptimisticLockException;
 import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CommonAbstractCriteria;
 import jakarta.persistence.criteria.CompoundSelection;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaDelete;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Fetch;
+import jakarta.persistence.criteria.FetchParent;
 import jakarta.persistence.criteria.From;
 import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.ParameterExpression;
 import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
 import jakarta.persistence.criteria.Selection;
 import jakarta.persistence.metamodel.SingularAttribute;
+import org.hibernate.Hibernate;
 import org.hibernate.LockMode;
-import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.OrderingMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionCheckMode;
+import org.hibernate.StatelessSession;
 import org.hibernate.dialect.Database;
 import org.hibernate.dialect.Dialect;
-import org.hibernate.internal.SessionImpl;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.jpa.HibernateHints;
 import org.hibernate.jpa.SpecHints;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.query.Order;
 import org.hibernate.query.Query;
+import org.hibernate.query.SelectionQuery;
+import org.hibernate.query.SortDirection;
 import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.hibernate.query.criteria.JpaCriteriaUpdate;
 import org.hibernate.query.criteria.JpaExpression;
 import org.hibernate.query.criteria.JpaFunction;
+import org.hibernate.query.sqm.tree.SqmCopyContext;
+import org.hibernate.query.sqm.tree.select.SqmSelectStatement;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.Temporal;
 import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
@@ -64,11 +115,12 @@ import static java.util.Objects.requireNonNull;
 @SuppressWarnings("DuplicatedCode")
 public class GeneralDaoImpl implements GeneralDao {
 
-    private static final Map<String, Database> PU_2_DATABASE = new ConcurrentHashMap<>();
-
     @Override
     public <ENTITY, ID extends Serializable> ENTITY getById(EntityManager em, Class<ENTITY> entityType, ID id) {
-        return em.find(entityType, id);
+        if (!GeneralDaoEvent.enabled()) {
+            return em.find(entityType, id);
+        }
+        return recorded("getById", entityType, null, null, GeneralDaoImpl::rowCount, () -> em.find(entityType, id));
     }
 
     @Override
@@ -78,10 +130,11 @@ public class GeneralDaoImpl implements GeneralDao {
             ID id,
             Duration lockTimeout
     ) {
-        setTransactionScopedLockTimeout(em, lockTimeout);
-        ENTITY entity = em.find(entityType, id, LockModeType.PESSIMISTIC_WRITE);
-        setTransactionScopedLockTimeout(em, Duration.ZERO);
-        return entity;
+        if (lockTimeout == null && !GeneralDaoEvent.enabled()) {
+            return em.find(entityType, id, LockModeType.PESSIMISTIC_WRITE);
+        }
+        return lockingRead(em, "getByIdForUpdate", entityType, lockTimeout,
+                () -> em.find(entityType, id, LockModeType.PESSIMISTIC_WRITE));
     }
 
     @Override
@@ -108,11 +161,194 @@ public class GeneralDaoImpl implements GeneralDao {
             Collection<ID> ids,
             SingularAttribute<? super ENTITY, ID> idAttribute
     ) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<ENTITY> q = cb.createQuery(entityType);
-        Root<ENTITY> r = q.from(entityType);
-        q.where(inCollection(cb, r.get(idAttribute), ids));
-        return find(em, q);
+        return findByIds(em, entityType, ids, idAttribute, QueryReadMode.READ_WRITE);
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> List<ENTITY> findByIds(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            Collection<ID> ids,
+            SingularAttribute<? super ENTITY, ID> idAttribute,
+            QueryReadMode queryReadMode
+    ) {
+        if (ids == null) {
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<ENTITY> q = cb.createQuery(entityType);
+            q.from(entityType);
+            TypedQuery<ENTITY> typedQuery = em.createQuery(q);
+            applyReadOnlyHint(typedQuery, queryReadMode);
+            return getResultList(typedQuery, "findByIds", q, null);
+        }
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<ENTITY> loaded = multiLoad(em, "findByIds", entityType, ids, OrderingMode.UNORDERED, queryReadMode);
+        List<ENTITY> results = new ArrayList<>(loaded.size());
+        for (ENTITY entity : loaded) {
+            if (entity != null) {
+                results.add(entity);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> Map<ID, ENTITY> findByIdsAsMap(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            Collection<ID> ids,
+            ResultOrderMode resultOrderMode
+    ) {
+        return findByIdsAsMap(em, entityType, ids, resultOrderMode, QueryReadMode.READ_WRITE);
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> Map<ID, ENTITY> findByIdsAsMap(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            Collection<ID> ids,
+            ResultOrderMode resultOrderMode,
+            QueryReadMode queryReadMode
+    ) {
+        if (ids == null) {
+            throw new IllegalArgumentException("Required non-null ids collection");
+        }
+        int idCount = ids.size();
+        Map<ID, ENTITY> results = ResultOrderMode.AS_REQUESTED.equals(resultOrderMode)
+                ? LinkedHashMap.newLinkedHashMap(idCount)
+                : HashMap.newHashMap(idCount);
+        if (idCount == 0) {
+            return results;
+        }
+        /*
+        The ordered multi-load result is positionally aligned with the requested ids,
+        so the map is keyed without reading identifiers back from the loaded entities.
+         */
+        List<ID> idList = ids instanceof List<ID> list ? list : new ArrayList<>(ids);
+        List<ENTITY> loaded = multiLoad(em, "findByIdsAsMap", entityType, idList, OrderingMode.ORDERED, queryReadMode);
+        for (int i = 0; i < idCount; i++) {
+            ENTITY entity = loaded.get(i);
+            if (entity != null) {
+                results.put(idList.get(i), entity);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> List<ENTITY> findByIdsInRequestedOrder(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            List<ID> ids
+    ) {
+        return findByIdsInRequestedOrder(em, entityType, ids, QueryReadMode.READ_WRITE);
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> List<ENTITY> findByIdsInRequestedOrder(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            List<ID> ids,
+            QueryReadMode queryReadMode
+    ) {
+        if (ids == null) {
+            throw new IllegalArgumentException("Required non-null ids list");
+        }
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(multiLoad(em, "findByIdsInRequestedOrder", entityType, ids, OrderingMode.ORDERED, queryReadMode));
+    }
+
+    /**
+     * Multi-load resolves entities already managed by the persistence context (or present in the second-level cache)
+     * without touching the database, and loads only the remaining ids.
+     * Missing and removed entities come back as nulls.
+     * For {@link QueryReadMode#READ_ONLY} the default read-only setting of the session is switched on for the load,
+     * otherwise that setting is left as it is.
+     */
+    private <ENTITY, ID extends Serializable> List<ENTITY> multiLoad(
+            EntityManager em,
+            String operation,
+            Class<ENTITY> entityType,
+            Collection<ID> ids,
+            OrderingMode orderingMode,
+            QueryReadMode queryReadMode
+    ) {
+        Session session = em.unwrap(Session.class);
+        List<ID> idList = ids instanceof List<ID> list ? list : new ArrayList<>(ids);
+        if (!GeneralDaoEvent.enabled()) {
+            return findMultiple(session, entityType, idList, orderingMode, queryReadMode);
+        }
+        return recorded(operation, entityType, null, null, loaded -> loaded.stream().filter(Objects::nonNull).count(),
+                () -> findMultiple(session, entityType, idList, orderingMode, queryReadMode));
+    }
+
+    private static <ENTITY> List<ENTITY> findMultiple(
+            Session session,
+            Class<ENTITY> entityType,
+            List<?> ids,
+            OrderingMode orderingMode,
+            QueryReadMode queryReadMode
+    ) {
+        if (!QueryReadMode.READ_ONLY.equals(queryReadMode) || session.isDefaultReadOnly()) {
+            return session.findMultiple(entityType, ids, SessionCheckMode.ENABLED, orderingMode);
+        }
+        //Multi-load does not apply ReadOnlyMode to the entities it loads, but it does apply the session default
+        session.setDefaultReadOnly(true);
+        try {
+            return session.findMultiple(entityType, ids, SessionCheckMode.ENABLED, orderingMode);
+        } finally {
+            session.setDefaultReadOnly(false);
+        }
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> List<ENTITY> findByIdsInChunks(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            Collection<ID> ids,
+            SingularAttribute<? super ENTITY, ID> idAttribute,
+            int chunkSize
+    ) {
+        if (ids == null) {
+            throw new IllegalArgumentException("Required non-null ids collection");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Illegal chunkSize: " + chunkSize);
+        }
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<ID> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        int idCount = distinctIds.size();
+        List<ENTITY> results = new ArrayList<>(idCount);
+
+        HibernateCriteriaBuilder cb = hcb(em.getCriteriaBuilder());
+        if (getDatabaseCapabilities(em).supportsArrayBinding()) {
+            Class<ID> idType = wrappedJavaType(idAttribute);
+            CriteriaQuery<ENTITY> q = cb.createQuery(entityType);
+            Root<ENTITY> r = q.from(entityType);
+            ParameterExpression<ID[]> idsParam = cb.parameter(arrayType(idType));
+            q.where(cb.equal(r.get(idAttribute), anyOf(cb, idType, idsParam)));
+            TypedQuery<ENTITY> typedQuery = em.createQuery(q);
+
+            for (int from = 0; from < idCount; from += chunkSize) {
+                List<ID> chunk = distinctIds.subList(from, Math.min(from + chunkSize, idCount));
+                typedQuery.setParameter(idsParam, toArray(chunk, idType));
+                results.addAll(getResultList(typedQuery, "findByIdsInChunks", q, null));
+            }
+        } else {
+            for (int from = 0; from < idCount; from += chunkSize) {
+                List<ID> chunk = distinctIds.subList(from, Math.min(from + chunkSize, idCount));
+                CriteriaQuery<ENTITY> q = cb.createQuery(entityType);
+                Root<ENTITY> r = q.from(entityType);
+                q.where(inCollection(cb, r.get(idAttribute), chunk));
+                results.addAll(getResultList(em.createQuery(q), "findByIdsInChunks", q, null));
+            }
+        }
+        return results;
     }
 
     @Override
@@ -187,7 +423,14 @@ public class GeneralDaoImpl implements GeneralDao {
         if (entity == null) {
             throw new IllegalArgumentException("Required non-null entity");
         }
-        em.persist(entity);
+        if (!GeneralDaoEvent.enabled()) {
+            em.persist(entity);
+            return;
+        }
+        recorded("persist", entity.getClass(), null, null, _ -> 1, () -> {
+            em.persist(entity);
+            return null;
+        });
     }
 
     @Override
@@ -195,7 +438,159 @@ public class GeneralDaoImpl implements GeneralDao {
         if (entity == null) {
             throw new IllegalArgumentException("Required non-null entity");
         }
-        return em.merge(entity);
+        if (!GeneralDaoEvent.enabled()) {
+            return em.merge(entity);
+        }
+        return recorded("merge", entity.getClass(), null, null, _ -> 1, () -> em.merge(entity));
+    }
+
+    @Override
+    public <ENTITY> BatchWriteStats persistAll(EntityManager em, Collection<? extends ENTITY> entities, int batchSize) {
+        if (!GeneralDaoEvent.enabled()) {
+            return writeAll(em, entities, batchSize, em::persist);
+        }
+        return recorded("persistAll", commonEntityType(entities), null, null, BatchWriteStats::entityCount,
+                () -> writeAll(em, entities, batchSize, em::persist));
+    }
+
+    @Override
+    public <ENTITY> BatchWriteStats mergeAll(EntityManager em, Collection<? extends ENTITY> entities, int batchSize) {
+        if (!GeneralDaoEvent.enabled()) {
+            return writeAll(em, entities, batchSize, em::merge);
+        }
+        return recorded("mergeAll", commonEntityType(entities), null, null, BatchWriteStats::entityCount,
+                () -> writeAll(em, entities, batchSize, em::merge));
+    }
+
+    /**
+     * @return the class of the given entities if all of them have the same one, otherwise null
+     */
+    private static Class<?> commonEntityType(Collection<?> entities) {
+        Class<?> commonType = null;
+        if (entities != null) {
+            for (Object entity : entities) {
+                if (entity == null) {
+                    continue;
+                }
+                if (commonType == null) {
+                    commonType = entity.getClass();
+                } else if (commonType != entity.getClass()) {
+                    return null;
+                }
+            }
+        }
+        return commonType;
+    }
+
+    @Override
+    public <ENTITY> long bulkInsert(EntityManager em, Class<ENTITY> entityType, Collection<? extends ENTITY> entities) {
+        if (entities == null) {
+            throw new IllegalArgumentException("Required non-null entities");
+        }
+        Database database = getDatabaseCapabilities(em).database();
+        if (database != Database.POSTGRESQL) {
+            throw new IllegalStateException("Bulk insert is supported only on PostgreSQL, but got " + database);
+        }
+        if (entities.isEmpty()) {
+            return 0;
+        }
+        //Rows inserted by COPY may reference entities which are still pending in the persistence context
+        em.flush();
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        if (!GeneralDaoEvent.enabled()) {
+            return PostgresCopyInserter.insert(session, entityType, entities);
+        }
+        return recorded("bulkInsert", entityType, null, null, inserted -> inserted,
+                () -> PostgresCopyInserter.insert(session, entityType, entities));
+    }
+
+    @Override
+    public <ENTITY> long upsertAll(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            Collection<? extends ENTITY> entities,
+            List<SingularAttribute<? super ENTITY, ?>> conflictKey,
+            int batchSize
+    ) {
+        if (entities == null) {
+            throw new IllegalArgumentException("Required non-null entities");
+        }
+        if (conflictKey == null || conflictKey.isEmpty()) {
+            throw new IllegalArgumentException("Expecting non-empty conflictKey");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Illegal batchSize: " + batchSize);
+        }
+        DatabaseCapabilities capabilities = getDatabaseCapabilities(em);
+        if (!capabilities.supportsUpsert()) {
+            throw new IllegalStateException("Upsert is supported only on PostgreSQL and SQL Server, but got " + capabilities.database());
+        }
+        if (entities.isEmpty()) {
+            return 0;
+        }
+        em.flush();
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        if (!GeneralDaoEvent.enabled()) {
+            return EntityUpserter.upsert(session, capabilities, entityType, entities, conflictKey, batchSize);
+        }
+        return recorded("upsertAll", entityType, null, null, upserted -> upserted,
+                () -> EntityUpserter.upsert(session, capabilities, entityType, entities, conflictKey, batchSize));
+    }
+
+    private BatchWriteStats writeAll(
+            EntityManager em,
+            Collection<?> entities,
+            int batchSize,
+            Consumer<Object> writer
+    ) {
+        if (entities == null) {
+            throw new IllegalArgumentException("Required non-null entities");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Illegal batchSize: " + batchSize);
+        }
+        long startNanos = System.nanoTime();
+        if (entities.isEmpty()) {
+            return new BatchWriteStats(0, 0, Duration.ZERO);
+        }
+
+        //Entities of the same type are written together so that the JDBC batches are not broken
+        //by interleaved statements for other tables
+        Map<Class<?>, List<Object>> entitiesByType = new LinkedHashMap<>();
+        for (Object entity : entities) {
+            if (entity == null) {
+                throw new IllegalArgumentException("Required non-null entity");
+            }
+            entitiesByType.computeIfAbsent(Hibernate.getClass(entity), _ -> new ArrayList<>()).add(entity);
+        }
+
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        //Only the entities written by this call are detached, the ones the caller already manages are kept
+        Set<Object> retainedEntities = managedEntities(session);
+        Integer originalJdbcBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(batchSize);
+        int entityCount = 0;
+        int flushCount = 0;
+        try {
+            for (List<Object> typeEntities : entitiesByType.values()) {
+                for (Object entity : typeEntities) {
+                    writer.accept(entity);
+                    if (++entityCount % batchSize == 0) {
+                        em.flush();
+                        detachAllExcept(session, retainedEntities);
+                        flushCount++;
+                    }
+                }
+            }
+            if (entityCount % batchSize != 0) {
+                em.flush();
+                detachAllExcept(session, retainedEntities);
+                flushCount++;
+            }
+        } finally {
+            session.setJdbcBatchSize(originalJdbcBatchSize);
+        }
+        return new BatchWriteStats(entityCount, flushCount, Duration.ofNanos(System.nanoTime() - startNanos));
     }
 
     @Override
@@ -205,7 +600,14 @@ public class GeneralDaoImpl implements GeneralDao {
 
     @Override
     public void flush(EntityManager em) {
-        em.flush();
+        if (!GeneralDaoEvent.enabled()) {
+            em.flush();
+            return;
+        }
+        recorded("flush", null, null, null, _ -> 0, () -> {
+            em.flush();
+            return null;
+        });
     }
 
     @Override
@@ -220,71 +622,593 @@ public class GeneralDaoImpl implements GeneralDao {
     }
 
     @Override
-    public <ENTITY> void remove(EntityManager em, ENTITY entity) {
-        if (entity == null) {
-            throw new IllegalArgumentException("Required non-null entity");
+    public <ENTITY> void remove(EntityManager em, ENTITY entity) {
+        if (entity == null) {
+            throw new IllegalArgumentException("Required non-null entity");
+        }
+        if (!GeneralDaoEvent.enabled()) {
+            em.remove(entity);
+            return;
+        }
+        recorded("remove", entity.getClass(), null, null, _ -> 1, () -> {
+            em.remove(entity);
+            return null;
+        });
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> int bulkDeleteByIds(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            SingularAttribute<? super ENTITY, ID> idAttribute,
+            Collection<ID> ids
+    ) {
+        if (ids == null) {
+            throw new IllegalArgumentException("Required non-null ids collection");
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaDelete<ENTITY> q = cb.createCriteriaDelete(entityType);
+        Root<ENTITY> r = q.from(entityType);
+        q.where(r.get(idAttribute).in(ids));
+        return executeBulkWrite(em.createQuery(q), "bulkDeleteByIds", entityType);
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> long bulkDeleteByIds(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            SingularAttribute<? super ENTITY, ID> idAttribute,
+            Collection<ID> ids,
+            int chunkSize,
+            Duration pauseBetweenChunks,
+            ChunkCompletionMode chunkCompletionMode
+    ) {
+        if (ids == null) {
+            throw new IllegalArgumentException("Required non-null ids collection");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Illegal chunkSize: " + chunkSize);
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<ID> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        HibernateCriteriaBuilder cb = hcb(em.getCriteriaBuilder());
+        if (getDatabaseCapabilities(em).supportsArrayBinding()) {
+            Class<ID> idType = wrappedJavaType(idAttribute);
+            CriteriaDelete<ENTITY> q = cb.createCriteriaDelete(entityType);
+            Root<ENTITY> r = q.from(entityType);
+            ParameterExpression<ID[]> idsParam = cb.parameter(arrayType(idType));
+            q.where(cb.equal(r.get(idAttribute), anyOf(cb, idType, idsParam)));
+            jakarta.persistence.Query query = em.createQuery(q);
+            return executeInChunks(em, distinctIds, chunkSize, pauseBetweenChunks, chunkCompletionMode,
+                    chunk -> executeBulkWrite(query.setParameter(idsParam, toArray(chunk, idType)), "bulkDeleteByIds", entityType));
+        } else {
+            return executeInChunks(em, distinctIds, chunkSize, pauseBetweenChunks, chunkCompletionMode, chunk -> {
+                CriteriaDelete<ENTITY> q = cb.createCriteriaDelete(entityType);
+                Root<ENTITY> r = q.from(entityType);
+                q.where(r.get(idAttribute).in(chunk));
+                return executeBulkWrite(em.createQuery(q), "bulkDeleteByIds", entityType);
+            });
+        }
+    }
+
+    private static int executeBulkWrite(jakarta.persistence.Query query, String operation, Class<?> entityType) {
+        if (!GeneralDaoEvent.enabled()) {
+            return query.executeUpdate();
+        }
+        return recorded(operation, entityType, null, null, affected -> affected, query::executeUpdate);
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> long bulkUpdateByIds(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            SingularAttribute<? super ENTITY, ID> idAttribute,
+            Collection<ID> ids,
+            Map<SingularAttribute<? super ENTITY, ?>, ?> values,
+            int chunkSize,
+            Duration pauseBetweenChunks,
+            ChunkCompletionMode chunkCompletionMode
+    ) {
+        if (ids == null) {
+            throw new IllegalArgumentException("Required non-null ids collection");
+        }
+        if (values == null || values.isEmpty()) {
+            throw new IllegalArgumentException("Expecting non-empty values");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Illegal chunkSize: " + chunkSize);
+        }
+        for (SingularAttribute<? super ENTITY, ?> attribute : values.keySet()) {
+            if (attribute.isId() || attribute.isVersion()) {
+                throw new IllegalArgumentException("Id and version attributes cannot be updated: " + attribute.getName());
+            }
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<ID> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        HibernateCriteriaBuilder cb = hcb(em.getCriteriaBuilder());
+        boolean versioned = getEntityMetadata(em, entityType).isVersioned();
+        if (getDatabaseCapabilities(em).supportsArrayBinding()) {
+            Class<ID> idType = wrappedJavaType(idAttribute);
+            JpaCriteriaUpdate<ENTITY> q = createBulkUpdate(cb, entityType, values, versioned);
+            ParameterExpression<ID[]> idsParam = cb.parameter(arrayType(idType));
+            q.where(cb.equal(q.getRoot().get(idAttribute), anyOf(cb, idType, idsParam)));
+            jakarta.persistence.Query query = em.createQuery(q);
+            return executeInChunks(em, distinctIds, chunkSize, pauseBetweenChunks, chunkCompletionMode,
+                    chunk -> executeBulkWrite(query.setParameter(idsParam, toArray(chunk, idType)), "bulkUpdateByIds", entityType));
+        } else {
+            return executeInChunks(em, distinctIds, chunkSize, pauseBetweenChunks, chunkCompletionMode, chunk -> {
+                JpaCriteriaUpdate<ENTITY> q = createBulkUpdate(cb, entityType, values, versioned);
+                q.where(q.getRoot().get(idAttribute).in(chunk));
+                return executeBulkWrite(em.createQuery(q), "bulkUpdateByIds", entityType);
+            });
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <ENTITY> JpaCriteriaUpdate<ENTITY> createBulkUpdate(
+            HibernateCriteriaBuilder cb,
+            Class<ENTITY> entityType,
+            Map<SingularAttribute<? super ENTITY, ?>, ?> values,
+            boolean versioned
+    ) {
+        JpaCriteriaUpdate<ENTITY> q = cb.createCriteriaUpdate(entityType);
+        q.from(entityType);
+        for (Map.Entry<SingularAttribute<? super ENTITY, ?>, ?> e : values.entrySet()) {
+            Object value = e.getValue();
+            q.set((SingularAttribute) e.getKey(), value);
+        }
+        //Increments the version the same way as "update versioned" in HQL
+        return q.versioned(versioned);
+    }
+
+    private <ID> long executeInChunks(
+            EntityManager em,
+            List<ID> ids,
+            int chunkSize,
+            Duration pauseBetweenChunks,
+            ChunkCompletionMode chunkCompletionMode,
+            ToIntFunction<List<ID>> chunkExecutor
+    ) {
+        int idCount = ids.size();
+        long affectedRows = 0;
+        for (int from = 0; from < idCount; from += chunkSize) {
+            if (from > 0 && pauseBetweenChunks != null && pauseBetweenChunks.isPositive()) {
+                try {
+                    Thread.sleep(pauseBetweenChunks);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted between chunks, affectedRows=" + affectedRows, e);
+                }
+            }
+            affectedRows += chunkExecutor.applyAsInt(ids.subList(from, Math.min(from + chunkSize, idCount)));
+            if (chunkCompletionMode != null) {
+                switch (chunkCompletionMode) {
+                    case NONE -> {
+                        //no-op
+                    }
+                    case FLUSH_AND_CLEAR -> flushAndClear(em);
+                    case COMMIT -> {
+                        EntityTransaction tx = em.getTransaction();
+                        tx.commit();
+                        tx.begin();
+                    }
+                }
+            }
+        }
+        return affectedRows;
+    }
+
+    private static <T> Class<T> wrappedJavaType(SingularAttribute<?, T> attribute) {
+        @SuppressWarnings("unchecked")
+        Class<T> wrappedType = (Class<T>) MethodType.methodType(attribute.getJavaType()).wrap().returnType();
+        return wrappedType;
+    }
+
+    /**
+     * The PostgreSQL {@code = any(?)} comparison with an array parameter.
+     * Rendered as a SQL fragment, as {@code any} is registered in HQL as the {@code bool_or} aggregate.
+     */
+    private static <T> Expression<T> anyOf(HibernateCriteriaBuilder cb, Class<T> elementType, ParameterExpression<T[]> arrayParam) {
+        return cb.sql("any(?)", elementType, arrayParam);
+    }
+
+    private static <T> Class<T[]> arrayType(Class<T> componentType) {
+        @SuppressWarnings("unchecked")
+        Class<T[]> arrayType = (Class<T[]>) componentType.arrayType();
+        return arrayType;
+    }
+
+    private static <T> T[] toArray(List<T> items, Class<T> componentType) {
+        return items.toArray(arrayType(componentType).cast(Array.newInstance(componentType, items.size())));
+    }
+
+    @Override
+    public <F, T> Join<F, T> fetchJoin(From<?, F> from, SingularAttribute<? super F, T> attribute) {
+        @SuppressWarnings("unchecked")
+        Join<F, T> join = (Join<F, T>) from.fetch(attribute);
+        return join;
+    }
+
+    @Override
+    public <R> List<R> find(EntityManager em, CriteriaQuery<R> query) {
+        return getResultList(em.createQuery(query), "find", query, null);
+    }
+
+    @Override
+    public <R> List<R> find(EntityManager em, CriteriaQuery<R> query, Integer offset, Integer limit) {
+        TypedQuery<R> typedQuery = em.createQuery(query);
+        applyOffsetAndLimit(typedQuery, offset, limit);
+        return getResultList(typedQuery, "find", query, null);
+    }
+
+    @Override
+    public <R> List<R> find(EntityManager em, CriteriaQuery<R> query, QueryCacheMode queryCacheMode) {
+        TypedQuery<R> typedQuery = em.createQuery(query);
+        applyQueryCacheHint(typedQuery, queryCacheMode);
+        return getResultList(typedQuery, "find", query, queryCacheMode);
+    }
+
+    @Override
+    public <R> List<R> find(
+            EntityManager em,
+            CriteriaQuery<R> query,
+            Integer offset,
+            Integer limit,
+            QueryCacheMode queryCacheMode
+    ) {
+        TypedQuery<R> typedQuery = em.createQuery(query);
+        applyQueryCacheHint(typedQuery, queryCacheMode);
+        applyOffsetAndLimit(typedQuery, offset, limit);
+        return getResultList(typedQuery, "find", query, queryCacheMode);
+    }
+
+    @Override
+    public <R> List<R> find(EntityManager em, CriteriaQuery<R> query, QueryReadMode queryReadMode) {
+        TypedQuery<R> typedQuery = em.createQuery(query);
+        applyReadOnlyHint(typedQuery, queryReadMode);
+        return getResultList(typedQuery, "find", query, null);
+    }
+
+    @Override
+    public <R> List<R> find(
+            EntityManager em,
+            CriteriaQuery<R> query,
+            Integer offset,
+            Integer limit,
+            QueryCacheMode queryCacheMode,
+            QueryReadMode queryReadMode
+    ) {
+        TypedQuery<R> typedQuery = em.createQuery(query);
+        applyQueryCacheHint(typedQuery, queryCacheMode);
+        applyReadOnlyHint(typedQuery, queryReadMode);
+        applyOffsetAndLimit(typedQuery, offset, limit);
+        return getResultList(typedQuery, "find", query, queryCacheMode);
+    }
+
+    @Override
+    public <R> PageWithTotal<R> findPage(EntityManager em, CriteriaQuery<R> query, Integer offset, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Illegal limit: " + limit);
+        }
+        SqmSelectStatement<R> sqmQuery = (SqmSelectStatement<R>) query;
+        for (Root<?> queryRoot : sqmQuery.getRoots()) {
+            if (hasCollectionFetch(queryRoot)) {
+                throw new IllegalArgumentException("Expecting a query without collection fetch joins, but got " + sqmQuery);
+            }
+        }
+        if (sqmQuery.isDistinct()) {
+            //The window aggregate is evaluated before DISTINCT and would count the duplicate rows too
+            TypedQuery<R> typedQuery = em.createQuery(query);
+            applyOffsetAndLimit(typedQuery, offset, limit);
+            List<R> results = getResultList(typedQuery, "findPage", query, null);
+            long totalCount = count(em.createQuery(sqmQuery.createCountQuery()), "findPage", query, null);
+            return new PageWithTotal<>(results, totalCount);
+        }
+        SqmSelectStatement<Object[]> pageQuery = sqmQuery.createCopy(SqmCopyContext.simpleContext(), Object[].class);
+        Root<?> root = pageQuery.getRoots().iterator().next();
+        Selection<?> selection = query.getSelection() == null ? root : pageQuery.getSelection();
+        if (selection.isCompoundSelection()) {
+            throw new IllegalArgumentException("Expecting a query with a single selection, but got " + selection);
+        }
+        HibernateCriteriaBuilder hcb = hcb(em.getCriteriaBuilder());
+        pageQuery.select(hcb.array(selection, hcb.count(root, hcb.createWindow())));
+
+        TypedQuery<Object[]> typedQuery = em.createQuery(pageQuery);
+        applyOffsetAndLimit(typedQuery, offset, limit);
+        List<Object[]> rows = getResultList(typedQuery, "findPage", query, null);
+
+        if (rows.isEmpty()) {
+            //The window aggregate is not available without a row, fall back to a separate count query
+            long totalCount = offset == null || offset == 0
+                    ? 0
+                    : count(em.createQuery(sqmQuery.createCountQuery()), "findPage", query, null);
+            return new PageWithTotal<>(new ArrayList<>(), totalCount);
+        }
+        List<R> results = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            @SuppressWarnings("unchecked")
+            R result = (R) row[0];
+            results.add(result);
+        }
+        return new PageWithTotal<>(results, (Long) rows.getFirst()[1]);
+    }
+
+    private static boolean hasCollectionFetch(FetchParent<?, ?> fetchParent) {
+        for (Fetch<?, ?> fetch : fetchParent.getFetches()) {
+            if (fetch.getAttribute().isCollection() || hasCollectionFetch(fetch)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public <R> Slice<R> findSlice(EntityManager em, CriteriaQuery<R> query, Integer offset, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Illegal limit: " + limit);
+        }
+        TypedQuery<R> typedQuery = em.createQuery(query);
+        applyOffsetAndLimit(typedQuery, offset, limit + 1);
+        List<R> results = getResultList(typedQuery, "findSlice", query, null);
+        if (results.size() <= limit) {
+            return new Slice<>(results, false);
+        }
+        return new Slice<>(new ArrayList<>(results.subList(0, limit)), true);
+    }
+
+    @Override
+    public <R> KeysetPage<R> findKeysetPage(
+            EntityManager em,
+            CriteriaQuery<R> query,
+            List<Order<? super R>> keyDefinition,
+            List<?> lastSeenKey,
+            int limit
+    ) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Illegal limit: " + limit);
+        }
+        int keySize = keyDefinition.size();
+        if (keySize == 0) {
+            throw new IllegalArgumentException("Expecting non-empty keyDefinition");
+        }
+        if (lastSeenKey != null) {
+            if (lastSeenKey.size() != keySize) {
+                throw new IllegalArgumentException(format(
+                        "Expecting lastSeenKey of size %s, but got %s", keySize, lastSeenKey));
+            }
+            for (int i = 0; i < keySize; i++) {
+                if (!(lastSeenKey.get(i) instanceof Comparable)) {
+                    throw new IllegalArgumentException(format(
+                            "Required non-null comparable lastSeenKey values, but got %s at index %s", lastSeenKey.get(i), i));
+                }
+            }
+        }
+        //The seek restriction and the key ordering are applied to a copy,
+        //so that the query given by the caller can be shared, e.g. by a QueryTemplate
+        SqmSelectStatement<R> seekQuery = ((SqmSelectStatement<R>) query).copy(SqmCopyContext.simpleContext());
+        Root<?> root = seekQuery.getRoots().iterator().next();
+        if (!root.getJavaType().isAssignableFrom(query.getResultType())) {
+            throw new IllegalArgumentException("Expecting a query selecting its root entity, but got " + query.getResultType());
+        }
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        List<Path<?>> keyPaths = new ArrayList<>(keySize);
+        List<jakarta.persistence.criteria.Order> orders = new ArrayList<>(keySize);
+        for (Order<? super R> keyOrder : keyDefinition) {
+            Path<?> keyPath = root.get(keyOrder.attribute().getName());
+            keyPaths.add(keyPath);
+            orders.add(keyOrder.direction() == SortDirection.DESCENDING ? cb.desc(keyPath) : cb.asc(keyPath));
+        }
+
+        if (lastSeenKey != null) {
+            //Expanded form of the row value comparison (k1, k2, ...) > (v1, v2, ...),
+            //which also supports mixed sort directions,
+            //plus a redundant range bound on the leading key to allow an index range scan
+            Predicate[] seekDisjuncts = new Predicate[keySize];
+            for (int i = 0; i < keySize; i++) {
+                Predicate[] seekConjuncts = new Predicate[i + 1];
+                for (int j = 0; j < i; j++) {
+                    seekConjuncts[j] = cb.equal(keyPaths.get(j), lastSeenKey.get(j));
+                }
+                boolean descending = keyDefinition.get(i).direction() == SortDirection.DESCENDING;
+                seekConjuncts[i] = seekBound(cb, keyPaths.get(i), lastSeenKey.get(i), descending, false);
+                seekDisjuncts[i] = cb.and(seekConjuncts);
+            }
+            boolean leadingDescending = keyDefinition.getFirst().direction() == SortDirection.DESCENDING;
+            Predicate leadingKeyBound = seekBound(cb, keyPaths.getFirst(), lastSeenKey.getFirst(), leadingDescending, true);
+            Predicate seek = cb.and(leadingKeyBound, cb.or(seekDisjuncts));
+            Predicate restriction = seekQuery.getRestriction();
+            seekQuery.where(restriction == null ? seek : cb.and(restriction, seek));
+        }
+        seekQuery.orderBy(orders);
+        List<R> results = getResultList(
+                em.createQuery(seekQuery).setMaxResults(limit + 1), "findKeysetPage", query, null);
+
+        if (results.size() <= limit) {
+            return new KeysetPage<>(results, null);
+        }
+        results = new ArrayList<>(results.subList(0, limit));
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        Object lastRow = Hibernate.unproxy(results.getLast());
+        EntityPersister persister = session.getFactory().getMappingMetamodel().getEntityDescriptor(lastRow.getClass());
+        List<Object> nextKey = new ArrayList<>(keySize);
+        for (Order<? super R> keyOrder : keyDefinition) {
+            SingularAttribute<?, ?> keyAttribute = keyOrder.attribute();
+            nextKey.add(keyAttribute.isId()
+                    ? persister.getIdentifier(lastRow, session)
+                    : persister.getPropertyValue(lastRow, keyAttribute.getName()));
+        }
+        return new KeysetPage<>(results, nextKey);
+    }
+
+    /**
+     * The values of a key attribute are comparable, but its Java type is not known statically.
+     */
+    @SuppressWarnings("unchecked")
+    private static <Y extends Comparable<? super Y>> Predicate seekBound(
+            CriteriaBuilder cb,
+            Path<?> keyPath,
+            Object keyValue,
+            boolean descending,
+            boolean inclusive
+    ) {
+        Expression<Y> key = (Expression<Y>) keyPath;
+        Y value = (Y) keyValue;
+        if (descending) {
+            return inclusive ? cb.lessThanOrEqualTo(key, value) : cb.lessThan(key, value);
+        } else {
+            return inclusive ? cb.greaterThanOrEqualTo(key, value) : cb.greaterThan(key, value);
+        }
+    }
+
+    @Override
+    public <R> Stream<R> stream(EntityManager em, CriteriaQuery<R> query, int fetchSize, int evictEvery) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Illegal fetchSize: " + fetchSize);
         }
-        em.remove(entity);
+        if (evictEvery < 0) {
+            throw new IllegalArgumentException("Illegal evictEvery: " + evictEvery);
+        }
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        Set<Object> retainedEntities = evictEvery > 0 ? managedEntities(session) : null;
+        //Unlike the other operations, the event spans the consumption of the stream until it is closed
+        GeneralDaoEvent event = GeneralDaoEvent.beginIfEnabled();
+        ScrollableResults<R> scroll;
+        try {
+            scroll = asHibernateQuery(em.createQuery(query))
+                    .setFetchSize(fetchSize)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+        } catch (RuntimeException e) {
+            if (event != null) {
+                event.failedWith(e).commit("stream", query, 0, null, null);
+            }
+            throw e;
+        }
+        var spliterator = new Spliterators.AbstractSpliterator<R>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            private int rowsSinceEviction;
+
+            private long rowCount;
+
+            private Set<Object> entitiesToEvict;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super R> action) {
+                if (!scroll.next()) {
+                    return false;
+                }
+                R row = scroll.get();
+                if (entitiesToEvict != null) {
+                    //Evicted only once the next row is fetched, so the rows of the last batch stay managed
+                    detachAllExceptRow(session, entitiesToEvict, row);
+                    entitiesToEvict = null;
+                }
+                rowCount++;
+                action.accept(row);
+                if (retainedEntities != null && ++rowsSinceEviction == evictEvery) {
+                    //The consumed rows together with their fetched or lazily initialized associations
+                    entitiesToEvict = loadedEntities(session, retainedEntities);
+                    rowsSinceEviction = 0;
+                }
+                return true;
+            }
+
+            void close() {
+                scroll.close();
+                if (event != null) {
+                    event.commit("stream", query, rowCount, null, null);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
     }
 
-    @Override
-    public <ENTITY, ID extends Serializable> int bulkDeleteByIds(
-            EntityManager em,
-            Class<ENTITY> entityType,
-            SingularAttribute<? super ENTITY, ID> idAttribute,
-            Collection<ID> ids
-    ) {
-        if (ids == null) {
-            throw new IllegalArgumentException("Required non-null ids collection");
+    private static Set<Object> managedEntities(SessionImplementor session) {
+        Set<Object> entities = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Map.Entry<Object, EntityEntry> entry : session.getPersistenceContextInternal().reentrantSafeEntityEntries()) {
+            entities.add(entry.getKey());
         }
-        if (ids.isEmpty()) {
-            return 0;
+        return entities;
+    }
+
+    /**
+     * Returns the managed entities which exist in the database, except the retained ones.
+     */
+    private static Set<Object> loadedEntities(SessionImplementor session, Set<Object> retainedEntities) {
+        Set<Object> entities = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Map.Entry<Object, EntityEntry> entry : session.getPersistenceContextInternal().reentrantSafeEntityEntries()) {
+            Object entity = entry.getKey();
+            if (entry.getValue().isExistsInDatabase() && !retainedEntities.contains(entity)) {
+                entities.add(entity);
+            }
         }
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaDelete<ENTITY> q = cb.createCriteriaDelete(entityType);
-        Root<ENTITY> r = q.from(entityType);
-        q.where(r.get(idAttribute).in(ids));
-        return em.createQuery(q).executeUpdate();
+        return entities;
     }
 
-    @Override
-    public <F, T> Join<F, T> fetchJoin(From<?, F> from, SingularAttribute<? super F, T> attribute) {
-        @SuppressWarnings("unchecked")
-        Join<F, T> join = (Join<F, T>) from.fetch(attribute);
-        return join;
+    /**
+     * Detaches the given entities which are still managed, except the ones the given stream row consists of.
+     */
+    private static void detachAllExceptRow(SessionImplementor session, Set<Object> entities, Object row) {
+        PersistenceContext persistenceContext = session.getPersistenceContextInternal();
+        List<Object> rowItems = row instanceof Object[] tuple ? Arrays.asList(tuple) : Collections.singletonList(row);
+        for (Object entity : entities) {
+            if (rowItems.stream().noneMatch(item -> item == entity) && persistenceContext.isEntryFor(entity)) {
+                session.detach(entity);
+            }
+        }
     }
 
-    @Override
-    public <R> List<R> find(EntityManager em, CriteriaQuery<R> query) {
-        return em.createQuery(query).getResultList();
+    /**
+     * Detaches the managed entities which exist in the database, except the retained ones.
+     * Entities persisted but not yet flushed are kept.
+     */
+    private static void detachAllExcept(SessionImplementor session, Set<Object> retainedEntities) {
+        PersistenceContext persistenceContext = session.getPersistenceContextInternal();
+        for (Map.Entry<Object, EntityEntry> entry : persistenceContext.reentrantSafeEntityEntries()) {
+            Object entity = entry.getKey();
+            if (entry.getValue().isExistsInDatabase()
+                && !retainedEntities.contains(entity)
+                && persistenceContext.isEntryFor(entity)) {
+                session.detach(entity);
+            }
+        }
     }
 
     @Override
-    public <R> List<R> find(EntityManager em, CriteriaQuery<R> query, Integer offset, Integer limit) {
-        TypedQuery<R> typedQuery = em.createQuery(query);
-        applyOffsetAndLimit(typedQuery, offset, limit);
-        return typedQuery.getResultList();
+    public <R> TypedQuery<R> createQuery(EntityManager em, QueryTemplate<R> template, Map<String, ?> parameters) {
+        CriteriaQuery<R> q = template.criteriaQuery(em.getEntityManagerFactory());
+        TypedQuery<R> typedQuery = em
+                .createQuery(q)
+                .setHint(HibernateHints.HINT_QUERY_PLAN_CACHEABLE, "true");
+        if (parameters != null) {
+            for (Map.Entry<String, ?> parameter : parameters.entrySet()) {
+                typedQuery.setParameter(parameter.getKey(), parameter.getValue());
+            }
+        }
+        return typedQuery;
     }
 
     @Override
-    public <R> List<R> find(EntityManager em, CriteriaQuery<R> query, QueryCacheMode queryCacheMode) {
-        TypedQuery<R> typedQuery = em.createQuery(query);
-        applyQueryCacheHint(typedQuery, queryCacheMode);
-        return typedQuery.getResultList();
+    public <R> List<R> find(EntityManager em, QueryTemplate<R> template, Map<String, ?> parameters) {
+        return getResultList(createQuery(em, template, parameters), "find",
+                template.criteriaQuery(em.getEntityManagerFactory()), null);
     }
 
     @Override
-    public <R> List<R> find(
-            EntityManager em,
-            CriteriaQuery<R> query,
-            Integer offset,
-            Integer limit,
-            QueryCacheMode queryCacheMode
-    ) {
-        TypedQuery<R> typedQuery = em.createQuery(query);
-        applyQueryCacheHint(typedQuery, queryCacheMode);
-        applyOffsetAndLimit(typedQuery, offset, limit);
-        return typedQuery.getResultList();
+    public <R> R findFirst(EntityManager em, QueryTemplate<R> template, Map<String, ?> parameters) {
+        List<R> records = getResultList(createQuery(em, template, parameters).setMaxResults(1), "findFirst",
+                template.criteriaQuery(em.getEntityManagerFactory()), null);
+        int recordSize = records.size();
+        return switch (recordSize) {
+            case 0 -> null;
+            case 1 -> records.getFirst();
+            default -> throw new AssertionError(format("Expecting zero or one record, but found %s", recordSize));
+        };
     }
 
     @Override
@@ -326,7 +1250,7 @@ public class GeneralDaoImpl implements GeneralDao {
         query.select(cb.count(r.get(idAttribute)));
         TypedQuery<Long> typedQuery = em.createQuery(query);
         applyQueryCacheHint(typedQuery, queryCacheMode);
-        return typedQuery.getSingleResult();
+        return count(typedQuery, "count", query, queryCacheMode);
     }
 
     @Override
@@ -341,7 +1265,7 @@ public class GeneralDaoImpl implements GeneralDao {
                 .setFirstResult(offset == null ? 0 : offset)
                 .setMaxResults(1);
 
-        List<R> records = typedQuery.getResultList();
+        List<R> records = getResultList(typedQuery, "findFirst", q, null);
         int recordSize = records.size();
         return switch (recordSize) {
             case 0 -> null;
@@ -358,7 +1282,24 @@ public class GeneralDaoImpl implements GeneralDao {
 
         applyQueryCacheHint(typedQuery, queryCacheMode);
 
-        List<R> records = typedQuery.getResultList();
+        List<R> records = getResultList(typedQuery, "findFirst", q, queryCacheMode);
+        int recordSize = records.size();
+        return switch (recordSize) {
+            case 0 -> null;
+            case 1 -> records.getFirst();
+            default -> throw new AssertionError(format("Expecting zero or one record, but found %s", recordSize));
+        };
+    }
+
+    @Override
+    public <R> R findFirst(EntityManager em, CriteriaQuery<R> q, QueryReadMode queryReadMode) {
+        TypedQuery<R> typedQuery = em
+                .createQuery(q)
+                .setMaxResults(1);
+
+        applyReadOnlyHint(typedQuery, queryReadMode);
+
+        List<R> records = getResultList(typedQuery, "findFirst", q, null);
         int recordSize = records.size();
         return switch (recordSize) {
             case 0 -> null;
@@ -367,12 +1308,111 @@ public class GeneralDaoImpl implements GeneralDao {
         };
     }
 
-    @SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
     @Override
     public void setTransactionScopedLockTimeout(EntityManager em, Duration timeout) {
         if (timeout.isNegative()) {
             throw new IllegalArgumentException("Illegal timeout: " + timeout);
         }
+        lockTimeout(em).set(timeout);
+    }
+
+    /**
+     * Performs the operation and emits a {@link GeneralDaoEvent} if the event is enabled.
+     * Callers check {@link GeneralDaoEvent#enabled()} first and perform the operation directly if it is not,
+     * so that the lambdas passed here are allocated only while the event is being recorded.
+     *
+     * @param source      the entity type or the criteria query whose root determines the entity type
+     * @param lockTimeout the lock timeout of a locking read, null if none
+     * @param rowCount    the number of rows read or written according to the result
+     */
+    private static <R> R recorded(
+            String operation,
+            Object source,
+            QueryCacheMode queryCacheMode,
+            Duration lockTimeout,
+            ToLongFunction<? super R> rowCount,
+            Supplier<R> work
+    ) {
+        GeneralDaoEvent event = GeneralDaoEvent.beginIfEnabled();
+        if (event == null) {
+            return work.get();
+        }
+        R result;
+        try {
+            result = work.get();
+        } catch (RuntimeException e) {
+            event.failedWith(e).commit(operation, source, 0, queryCacheMode, lockTimeout);
+            throw e;
+        }
+        event.commit(operation, source, rowCount.applyAsLong(result), queryCacheMode, lockTimeout);
+        return result;
+    }
+
+    private static long rowCount(Object result) {
+        return result instanceof Collection<?> results ? results.size() : result == null ? 0 : 1;
+    }
+
+    private static <R> List<R> getResultList(
+            TypedQuery<R> typedQuery,
+            String operation,
+            CommonAbstractCriteria query,
+            QueryCacheMode queryCacheMode
+    ) {
+        if (!GeneralDaoEvent.enabled()) {
+            return typedQuery.getResultList();
+        }
+        return recorded(operation, query, queryCacheMode, null, List::size, typedQuery::getResultList);
+    }
+
+    private static <R> List<R> getResultList(
+            SelectionQuery<R> selectionQuery,
+            String operation,
+            CommonAbstractCriteria query
+    ) {
+        if (!GeneralDaoEvent.enabled()) {
+            return selectionQuery.getResultList();
+        }
+        return recorded(operation, query, null, null, List::size, selectionQuery::getResultList);
+    }
+
+    private static long count(
+            TypedQuery<Long> countQuery,
+            String operation,
+            CommonAbstractCriteria query,
+            QueryCacheMode queryCacheMode
+    ) {
+        if (!GeneralDaoEvent.enabled()) {
+            return countQuery.getSingleResult();
+        }
+        return recorded(operation, query, queryCacheMode, null, _ -> 1, countQuery::getSingleResult);
+    }
+
+    /**
+     * Performs the lock acquisition, with the lock timeout if it is not null.
+     */
+    private <R> R lockingRead(
+            EntityManager em,
+            String operation,
+            Object source,
+            Duration lockTimeout,
+            Supplier<R> lockAcquisition
+    ) {
+        if (!GeneralDaoEvent.enabled()) {
+            return lockTimeout == null ? lockAcquisition.get() : acquireWithLockTimeout(em, lockTimeout, lockAcquisition);
+        }
+        return recorded(operation, source, null, lockTimeout, GeneralDaoImpl::rowCount, lockTimeout == null
+                ? lockAcquisition
+                : () -> acquireWithLockTimeout(em, lockTimeout, lockAcquisition));
+    }
+
+    private <R> R acquireWithLockTimeout(EntityManager em, Duration timeout, Supplier<R> lockAcquisition) {
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("Illegal timeout: " + timeout);
+        }
+        return lockTimeout(em).acquire(timeout, lockAcquisition);
+    }
+
+    private TransactionLockTimeout lockTimeout(EntityManager em) {
         Database database = getDatabase(em);
         if (Database.POSTGRESQL.equals(database)) {
             /*
@@ -380,8 +1420,7 @@ public class GeneralDaoImpl implements GeneralDao {
             to acquire a lock on a table, index, row, or other database object.
             The effects of SET LOCAL last only till the end of the current transaction
              */
-            long timeoutInMillis = timeout.toMillis();
-            em.createNativeQuery("set local lock_timeout = " + timeoutInMillis).executeUpdate();
+            return TransactionLockTimeout.of(em.unwrap(SessionImplementor.class));
         } else {
             throw new IllegalStateException("Unsupported database: " + database);
         }
@@ -440,22 +1479,19 @@ public class GeneralDaoImpl implements GeneralDao {
     ) {
         requireNonNull(lockTimeout, "Expecting non-null lockTimeout");
 
-        setTransactionScopedLockTimeout(em, lockTimeout);
         TypedQuery<R> typedQuery = em
                 .createQuery(q)
                 .setMaxResults(1)
                 .setLockMode(LockModeType.PESSIMISTIC_WRITE)
                 .setHint(SpecHints.HINT_SPEC_LOCK_TIMEOUT, Long.toString(lockTimeout.toMillis()));
 
-        List<R> records = typedQuery.getResultList();
+        List<R> records = lockingRead(em, "findFirstForUpdate", q, lockTimeout, typedQuery::getResultList);
         int recordSize = records.size();
-        R result = switch (recordSize) {
+        return switch (recordSize) {
             case 0 -> null;
             case 1 -> records.getFirst();
             default -> throw new AssertionError(format("Expecting zero or one record, but found %s", recordSize));
         };
-        setTransactionScopedLockTimeout(em, Duration.ZERO);
-        return result;
     }
 
     @Override
@@ -466,22 +1502,19 @@ public class GeneralDaoImpl implements GeneralDao {
     ) {
         requireNonNull(lockTimeout, "Expecting non-null lockTimeout");
 
-        setTransactionScopedLockTimeout(em, lockTimeout);
         TypedQuery<R> typedQuery = em
                 .createQuery(q)
                 .setMaxResults(1)
                 .setLockMode(LockModeType.PESSIMISTIC_READ)
                 .setHint(SpecHints.HINT_SPEC_LOCK_TIMEOUT, Long.toString(lockTimeout.toMillis()));
 
-        List<R> records = typedQuery.getResultList();
+        List<R> records = lockingRead(em, "findFirstForPessimisticRead", q, lockTimeout, typedQuery::getResultList);
         int recordSize = records.size();
-        R result = switch (recordSize) {
+        return switch (recordSize) {
             case 0 -> null;
             case 1 -> records.getFirst();
             default -> throw new AssertionError(format("Expecting zero or one record, but found %s", recordSize));
         };
-        setTransactionScopedLockTimeout(em, Duration.ZERO);
-        return result;
     }
 
     @Override
@@ -492,7 +1525,7 @@ public class GeneralDaoImpl implements GeneralDao {
 
         asHibernateQuery(typedQuery).setHibernateLockMode(LockMode.UPGRADE_SKIPLOCKED);
 
-        List<R> records = typedQuery.getResultList();
+        List<R> records = getResultList(typedQuery, "findFirstForUpdateSkipLocked", q, null);
         int recordSize = records.size();
         return switch (recordSize) {
             case 0 -> null;
@@ -501,6 +1534,20 @@ public class GeneralDaoImpl implements GeneralDao {
         };
     }
 
+    @Override
+    public <R> List<R> findForUpdateSkipLocked(EntityManager em, CriteriaQuery<R> q, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Illegal limit: " + limit);
+        }
+        TypedQuery<R> typedQuery = em
+                .createQuery(q)
+                .setMaxResults(limit);
+
+        asHibernateQuery(typedQuery).setHibernateLockMode(LockMode.UPGRADE_SKIPLOCKED);
+
+        return getResultList(typedQuery, "findForUpdateSkipLocked", q, null);
+    }
+
     @Override
     public <R> Query<R> asHibernateQuery(TypedQuery<R> typedQuery) {
         return (Query<R>) typedQuery;
@@ -524,6 +1571,24 @@ public class GeneralDaoImpl implements GeneralDao {
         }
     }
 
+    @Override
+    public <R> void applyReadOnlyHint(TypedQuery<R> typedQuery, QueryReadMode queryReadMode) {
+        if (queryReadMode != null) {
+            switch (queryReadMode) {
+                case READ_ONLY: {
+                    typedQuery.setHint(HibernateHints.HINT_READ_ONLY, true);
+                    break;
+                }
+                case READ_WRITE: {
+                    //no-op
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Unsupported value: " + queryReadMode);
+            }
+        }
+    }
+
     @Override
     public <NUMBER extends Number> Predicate asPredicate(
             CriteriaBuilder cb,
@@ -557,6 +1622,35 @@ public class GeneralDaoImpl implements GeneralDao {
         }
     }
 
+    @Override
+    public <E> Predicate inCollection(
+            CriteriaBuilder cb,
+            Expression<E> attribute,
+            Collection<E> filterItems,
+            InListPadding inListPadding
+    ) {
+        if (filterItems == null || inListPadding == null) {
+            return inCollection(cb, attribute, filterItems);
+        }
+        return switch (inListPadding) {
+            case NONE -> inCollection(cb, attribute, filterItems);
+            case POWER_OF_TWO -> {
+                int size = filterItems.size();
+                if (size <= 1 || Integer.bitCount(size) == 1) {
+                    yield inCollection(cb, attribute, filterItems);
+                }
+                int paddedSize = Integer.highestOneBit(size) << 1;
+                List<E> paddedItems = new ArrayList<>(paddedSize);
+                paddedItems.addAll(filterItems);
+                E lastItem = paddedItems.getLast();
+                for (int i = size; i < paddedSize; i++) {
+                    paddedItems.add(lastItem);
+                }
+                yield attribute.in(paddedItems);
+            }
+        };
+    }
+
     @Override
     public Predicate betweenLeftInclRightExcl(
             CriteriaBuilder cb,
@@ -633,31 +1727,202 @@ public class GeneralDaoImpl implements GeneralDao {
         return hcb(cb).durationBetween(leftDatetimeExpression, rightDatetimeExpression);
     }
 
+    @Override
+    public <ENTITY, ID extends Serializable> ENTITY getById(StatelessSession session, Class<ENTITY> entityType, ID id) {
+        if (!GeneralDaoEvent.enabled()) {
+            return session.get(entityType, id);
+        }
+        return recorded("getById", entityType, null, null, GeneralDaoImpl::rowCount, () -> session.get(entityType, id));
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> List<ENTITY> findByIds(
+            StatelessSession session,
+            Class<ENTITY> entityType,
+            Collection<ID> ids
+    ) {
+        if (ids == null) {
+            CriteriaQuery<ENTITY> q = session.getCriteriaBuilder().createQuery(entityType);
+            q.from(entityType);
+            return getResultList(session.createSelectionQuery(q), "findByIds", q);
+        }
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<ID> idList = new ArrayList<>(ids);
+        List<ENTITY> entities = new ArrayList<>(GeneralDaoEvent.enabled()
+                ? recorded("findByIds", entityType, null, null, loaded -> loaded.stream().filter(Objects::nonNull).count(),
+                        () -> session.getMultiple(entityType, idList))
+                : session.getMultiple(entityType, idList));
+        entities.removeIf(Objects::isNull);
+        return entities;
+    }
+
+    @Override
+    public <R> List<R> find(StatelessSession session, CriteriaQuery<R> query) {
+        return getResultList(session.createSelectionQuery(query), "find", query);
+    }
+
+    @Override
+    public <R> List<R> find(StatelessSession session, CriteriaQuery<R> query, Integer offset, Integer limit) {
+        SelectionQuery<R> selectionQuery = session.createSelectionQuery(query);
+        if (offset != null) {
+            selectionQuery.setFirstResult(offset);
+        }
+        if (limit != null) {
+            selectionQuery.setMaxResults(limit);
+        }
+        return getResultList(selectionQuery, "find", query);
+    }
+
+    @Override
+    public <R> R findFirst(StatelessSession session, CriteriaQuery<R> q) {
+        List<R> records = getResultList(session.createSelectionQuery(q).setMaxResults(1), "findFirst", q);
+        int recordSize = records.size();
+        return switch (recordSize) {
+            case 0 -> null;
+            case 1 -> records.getFirst();
+            default -> throw new AssertionError(format("Expecting zero or one record, but found %s", recordSize));
+        };
+    }
+
+    @Override
+    public <R> Stream<R> stream(StatelessSession session, CriteriaQuery<R> query, int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Illegal fetchSize: " + fetchSize);
+        }
+        //As for the stateful stream, the event spans the consumption of the stream until it is closed
+        GeneralDaoEvent event = GeneralDaoEvent.beginIfEnabled();
+        Stream<R> results;
+        try {
+            results = session.createSelectionQuery(query)
+                    .setFetchSize(fetchSize)
+                    .getResultStream();
+        } catch (RuntimeException e) {
+            if (event != null) {
+                event.failedWith(e).commit("stream", query, 0, null, null);
+            }
+            throw e;
+        }
+        if (event == null) {
+            return results;
+        }
+        long[] rowCount = new long[1];
+        return results
+                .peek(_ -> rowCount[0]++)
+                .onClose(() -> event.commit("stream", query, rowCount[0], null, null));
+    }
+
+    @Override
+    public <ENTITY> void insert(StatelessSession session, ENTITY entity) {
+        if (entity == null) {
+            throw new IllegalArgumentException("Required non-null entity");
+        }
+        if (!GeneralDaoEvent.enabled()) {
+            session.insert(entity);
+            return;
+        }
+        recorded("insert", entity.getClass(), null, null, _ -> 1, () -> {
+            session.insert(entity);
+            return null;
+        });
+    }
+
+    @Override
+    public <ENTITY> void insertAll(StatelessSession session, List<? extends ENTITY> entities) {
+        if (entities == null) {
+            throw new IllegalArgumentException("Required non-null entities");
+        }
+        if (!GeneralDaoEvent.enabled()) {
+            session.insertMultiple(entities);
+            return;
+        }
+        recorded("insertAll", commonEntityType(entities), null, null, _ -> entities.size(), () -> {
+            session.insertMultiple(entities);
+            return null;
+        });
+    }
+
+    @Override
+    public <ENTITY> void update(StatelessSession session, ENTITY entity) {
+        if (entity == null) {
+            throw new IllegalArgumentException("Required non-null entity");
+        }
+        if (!GeneralDaoEvent.enabled()) {
+            session.update(entity);
+            return;
+        }
+        recorded("update", entity.getClass(), null, null, _ -> 1, () -> {
+            session.update(entity);
+            return null;
+        });
+    }
+
+    @Override
+    public <ENTITY> void updateAll(StatelessSession session, List<? extends ENTITY> entities) {
+        if (entities == null) {
+            throw new IllegalArgumentException("Required non-null entities");
+        }
+        if (!GeneralDaoEvent.enabled()) {
+            session.updateMultiple(entities);
+            return;
+        }
+        recorded("updateAll", commonEntityType(entities), null, null, _ -> entities.size(), () -> {
+            session.updateMultiple(entities);
+            return null;
+        });
+    }
+
+    @Override
+    public <ENTITY> void delete(StatelessSession session, ENTITY entity) {
+        if (entity == null) {
+            throw new IllegalArgumentException("Required non-null entity");
+        }
+        if (!GeneralDaoEvent.enabled()) {
+            session.delete(entity);
+            return;
+        }
+        recorded("delete", entity.getClass(), null, null, _ -> 1, () -> {
+            session.delete(entity);
+            return null;
+        });
+    }
+
     @Override
     public HibernateCriteriaBuilder hcb(CriteriaBuilder cb) {
         return (HibernateCriteriaBuilder) cb;
     }
 
+    @Override
+    public DatabaseCapabilities getDatabaseCapabilities(EntityManager em) {
+        return DatabaseCapabilitiesRegistry.get(em.unwrap(SessionImplementor.class).getFactory());
+    }
+
+    @Override
+    public <ENTITY> EntityMetadata<ENTITY> getEntityMetadata(EntityManager em, Class<ENTITY> entityType) {
+        return EntityMetadataRegistry.metadata(em.unwrap(SessionImplementor.class).getFactory(), entityType);
+    }
+
+    @Override
+    public StatementTracker trackStatements(EntityManager em, StatementBudget budget) {
+        requireNonNull(budget, "Expecting non-null budget");
+        return StatementTrackerImpl.start(em.unwrap(SessionImplementor.class), budget);
+    }
+
     @Override
     public Database getDatabase(EntityManager em) {
-        Map<String, Object> emfProps = em.getEntityManagerFactory().getProperties();
-        String puName = (String) emfProps.get(AvailableSettings.PERSISTENCE_UNIT_NAME);
-        requireNonNull(puName);
-        return PU_2_DATABASE.computeIfAbsent(puName, _ -> detectDatabase(em));
+        Database database = getDatabaseCapabilities(em).database();
+        return database != null ? database : detectDatabase(em);
     }
 
     @Override
     public Database detectDatabase(EntityManager em) {
-        Dialect dialect = ((SessionImpl) em.getDelegate()).getJdbcServices().getDialect();
-        Class<? extends Dialect> dialectClass = dialect.getClass();
-        String dialectSimpleName = dialectClass.getSimpleName();
-        if (dialectSimpleName.contains("PostgreSQL")) {
-            return Database.POSTGRESQL;
-        } else if (dialectSimpleName.contains("SQLServer")) {
-            return Database.SQLSERVER;
-        } else {
-            throw new IllegalStateException("Unsupported dialect: " + dialectClass.getName());
+        Dialect dialect = em.unwrap(SessionImplementor.class).getJdbcServices().getDialect();
+        Database database = DatabaseCapabilitiesRegistry.detectDatabase(dialect);
+        if (database == null) {
+            throw new IllegalStateException("Unsupported dialect: " + dialect.getClass().getName());
         }
+        return database;
     }
 
     @Override
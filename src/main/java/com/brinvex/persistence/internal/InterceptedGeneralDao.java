@@ -0,0 +1,180 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.internal;
+
+import com.brinvex.persistence.api.GeneralDao;
+import com.brinvex.persistence.api.GeneralDaoInterceptor;
+import com.brinvex.persistence.api.GeneralDaoInvocation;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.AbstractQuery;
+import jakarta.persistence.criteria.CommonAbstractCriteria;
+import jakarta.persistence.criteria.CriteriaDelete;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.StatelessSession;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Passes the data access operations of a {@link GeneralDao}, i.e. the methods taking an {@link EntityManager}
+ * or a {@link StatelessSession} as their first argument, through a chain of interceptors.
+ * Criteria building helpers and the metadata lookups, which do not hit the database, are delegated directly.
+ */
+public final class InterceptedGeneralDao implements InvocationHandler {
+
+    private static final Set<String> METADATA_LOOKUPS = Set.of("getDatabase", "getDatabaseCapabilities", "getEntityMetadata");
+
+    private final GeneralDao target;
+
+    private final GeneralDaoInterceptor[] interceptors;
+
+    private final Set<Method> interceptedMethods;
+
+    private InterceptedGeneralDao(GeneralDao target, List<? extends GeneralDaoInterceptor> interceptors) {
+        this.target = target;
+        this.interceptors = interceptors.toArray(GeneralDaoInterceptor[]::new);
+        Set<Method> interceptedMethods = new HashSet<>();
+        for (Method method : GeneralDao.class.getMethods()) {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            if (parameterTypes.length > 0
+                && (parameterTypes[0] == EntityManager.class || parameterTypes[0] == StatelessSession.class)
+                && !METADATA_LOOKUPS.contains(method.getName())) {
+                interceptedMethods.add(method);
+            }
+        }
+        this.interceptedMethods = Set.copyOf(interceptedMethods);
+    }
+
+    public static GeneralDao of(GeneralDao target, List<? extends GeneralDaoInterceptor> interceptors) {
+        if (target == null) {
+            throw new IllegalArgumentException("Required non-null target");
+        }
+        if (interceptors == null) {
+            throw new IllegalArgumentException("Required non-null interceptors");
+        }
+        if (interceptors.isEmpty()) {
+            return target;
+        }
+        return (GeneralDao) Proxy.newProxyInstance(
+                GeneralDao.class.getClassLoader(),
+                new Class<?>[]{GeneralDao.class},
+                new InterceptedGeneralDao(target, interceptors)
+        );
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        if (method.getDeclaringClass() == Object.class) {
+            return switch (method.getName()) {
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "toString" -> "InterceptedGeneralDao[" + target + "]";
+                default -> invokeTarget(method, args);
+            };
+        }
+        if (!interceptedMethods.contains(method)) {
+            return invokeTarget(method, args);
+        }
+        return new Invocation(method, args).proceed();
+    }
+
+    private Object invokeTarget(Method method, Object[] args) {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final class Invocation implements GeneralDaoInvocation {
+
+        private final Method method;
+
+        private final Object[] args;
+
+        private int nextInterceptorIndex;
+
+        private Invocation(Method method, Object[] args) {
+            this.method = method;
+            this.args = args;
+        }
+
+        @Override
+        public String operation() {
+            return method.getName();
+        }
+
+        @Override
+        public Class<?> entityType() {
+            for (Object arg : args) {
+                if (arg instanceof Class<?> type) {
+                    return type;
+                }
+            }
+            return switch (query()) {
+                case AbstractQuery<?> q when !q.getRoots().isEmpty() -> q.getRoots().iterator().next().getJavaType();
+                case CriteriaUpdate<?> q -> q.getRoot().getJavaType();
+                case CriteriaDelete<?> q -> q.getRoot().getJavaType();
+                case null, default -> null;
+            };
+        }
+
+        @Override
+        public CommonAbstractCriteria query() {
+            for (Object arg : args) {
+                if (arg instanceof CommonAbstractCriteria query) {
+                    return query;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Object[] arguments() {
+            return args;
+        }
+
+        @Override
+        public Object proceed() {
+            int interceptorIndex = nextInterceptorIndex;
+            if (interceptorIndex == interceptors.length) {
+                return invokeTarget(method, args);
+            }
+            //Restored afterwards, so that a repeated call of proceed() from the same interceptor runs the rest of the chain again
+            nextInterceptorIndex = interceptorIndex + 1;
+            try {
+                return interceptors[interceptorIndex].intercept(this);
+            } finally {
+                nextInterceptorIndex = interceptorIndex;
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.internal;
+
+import com.brinvex.persistence.api.AbstractJob;
+import com.brinvex.persistence.api.JobConsumer;
+import com.brinvex.persistence.api.JobHandler;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.lang.System.Logger.Level;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A dispatcher thread claims batches of jobs, as many as there are free processing slots,
+ * and hands each job over to a virtual thread of its own.
+ * When no job is available, the dispatcher waits for a notification on PostgreSQL,
+ * or sleeps for the poll interval on other databases.
+ * The dispatcher is never interrupted, an interrupt would close the connection it listens on.
+ * Instead, it waits in short slices and checks between them whether the consumer was closed.
+ */
+final class JobConsumerImpl<JOB extends AbstractJob> implements JobConsumer {
+
+    private static final System.Logger LOG = System.getLogger(JobConsumerImpl.class.getName());
+
+    private static final Duration CLOSE_CHECK_INTERVAL = Duration.ofSeconds(1);
+
+    private final JobQueueImpl<JOB> queue;
+
+    private final EntityManagerFactory emf;
+
+    private final JobHandler<JOB> handler;
+
+    private final Semaphore freeSlots;
+
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+
+    private volatile boolean running = true;
+
+    private Thread dispatcher;
+
+    JobConsumerImpl(JobQueueImpl<JOB> queue, EntityManagerFactory emf, JobHandler<JOB> handler, int concurrency) {
+        this.queue = queue;
+        this.emf = emf;
+        this.handler = handler;
+        this.freeSlots = new Semaphore(concurrency);
+    }
+
+    void start() {
+        dispatcher = Thread.ofVirtual().name("job-dispatcher-" + queue.config().channel()).start(this::dispatch);
+    }
+
+    private void dispatch() {
+        PostgresNotificationListener listener = null;
+        try {
+            boolean postgres;
+            try (EntityManager em = emf.createEntityManager()) {
+                postgres = queue.isPostgres(em);
+            }
+            while (running) {
+                try {
+                    if (postgres && listener == null) {
+                        listener = new PostgresNotificationListener(
+                                emf.unwrap(SessionFactoryImplementor.class), queue.config().channel());
+                    }
+                    if (!acquireSlot()) {
+                        break;
+                    }
+                    int limit = 1;
+                    while (limit < queue.config().batchSize() && freeSlots.tryAcquire()) {
+                        limit++;
+                    }
+                    int claimLimit = limit;
+                    List<JOB> jobs;
+                    try {
+                        jobs = inTx(em -> queue.claim(em, claimLimit));
+                    } catch (RuntimeException e) {
+                        freeSlots.release(limit);
+                        throw e;
+                    }
+                    //Each claimed job keeps its slot until processed
+                    freeSlots.release(limit - jobs.size());
+                    for (JOB job : jobs) {
+                        workers.submit(() -> {
+                            try {
+                                process(job);
+                            } finally {
+                                freeSlots.release();
+                            }
+                        });
+                    }
+                    if (jobs.size() < limit) {
+                        awaitJobs(listener);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    if (!running) {
+                        break;
+                    }
+                    LOG.log(Level.WARNING, "Job dispatching failed, retrying after " + queue.config().pollInterval(), e);
+                    if (listener != null) {
+                        closeQuietly(listener);
+                        listener = null;
+                    }
+                    try {
+                        pause();
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        } finally {
+            if (listener != null) {
+                closeQuietly(listener);
+            }
+        }
+    }
+
+    /**
+     * Returns false if the consumer was closed before a slot became free.
+     */
+    private boolean acquireSlot() throws InterruptedException {
+        while (running) {
+            if (freeSlots.tryAcquire(CLOSE_CHECK_INTERVAL.toMillis(), TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits for a notification, or the poll interval if there is no listener,
+     * returning early once the consumer is closed.
+     */
+    private void awaitJobs(PostgresNotificationListener listener) throws SQLException, InterruptedException {
+        if (listener == null) {
+            pause();
+            return;
+        }
+        long deadline = System.nanoTime() + queue.config().pollInterval().toNanos();
+        Duration slice;
+        while (running && (slice = nextSlice(deadline)) != null) {
+            if (listener.await(slice)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sleeps for the poll interval, returning early once the consumer is closed.
+     */
+    private void pause() throws InterruptedException {
+        long deadline = System.nanoTime() + queue.config().pollInterval().toNanos();
+        Duration slice;
+        while (running && (slice = nextSlice(deadline)) != null) {
+            Thread.sleep(slice);
+        }
+    }
+
+    private static Duration nextSlice(long deadlineNanos) {
+        long remainingNanos = deadlineNanos - System.nanoTime();
+        if (remainingNanos <= 0) {
+            return null;
+        }
+        //A zero timeout would make the listener wait without limit
+        return Duration.ofMillis(Math.max(1, TimeUnit.NANOSECONDS.toMillis(
+                Math.min(remainingNanos, CLOSE_CHECK_INTERVAL.toNanos()))));
+    }
+
+    /**
+     * Handles and acknowledges the job in one transaction. The job row stays locked meanwhile,
+     * so the job is not claimed again even if its lease expires.
+     * If handling fails, the job is not acknowledged in a new transaction.
+     */
+    private void process(JOB claimedJob) {
+        Exception failure;
+        try (EntityManager em = emf.createEntityManager()) {
+            EntityTransaction tx = em.getTransaction();
+            try {
+                tx.begin();
+                JOB job = queue.lockClaimed(em, claimedJob);
+                if (job == null) {
+                    tx.rollback();
+                    return;
+                }
+                handler.handle(em, job);
+                queue.ack(em, claimedJob);
+                tx.commit();
+                return;
+            } catch (Exception e) {
+                failure = e;
+                if (tx.isActive()) {
+                    try {
+                        tx.rollback();
+                    } catch (RuntimeException re) {
+                        failure.addSuppressed(re);
+                    }
+                }
+            }
+        }
+        try {
+            inTx(em -> queue.nack(em, claimedJob, failure.toString()));
+        } catch (RuntimeException e) {
+            e.addSuppressed(failure);
+            LOG.log(Level.WARNING, "Job could not be returned to the queue, it is retried after its lease expires", e);
+        }
+    }
+
+    private <R> R inTx(Function<EntityManager, R> work) {
+        try (EntityManager em = emf.createEntityManager()) {
+            EntityTransaction tx = em.getTransaction();
+            try {
+                tx.begin();
+                R result = work.apply(em);
+                tx.commit();
+                return result;
+            } catch (RuntimeException e) {
+                if (tx.isActive()) {
+                    tx.rollback();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static void closeQuietly(PostgresNotificationListener listener) {
+        try {
+            listener.close();
+        } catch (Exception e) {
+            LOG.log(Level.DEBUG, "Closing notification listener failed", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (dispatcher != null) {
+            try {
+                dispatcher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers.close();
+    }
+}
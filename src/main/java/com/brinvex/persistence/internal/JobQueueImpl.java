@@ -0,0 +1,238 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.internal;
+
+import com.brinvex.persistence.api.AbstractJob;
+import com.brinvex.persistence.api.AbstractJob_;
+import com.brinvex.persistence.api.GeneralDao;
+import com.brinvex.persistence.api.JobConsumer;
+import com.brinvex.persistence.api.JobHandler;
+import com.brinvex.persistence.api.JobQueue;
+import com.brinvex.persistence.api.JobQueueConfig;
+import com.brinvex.persistence.api.JobStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.dialect.Database;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+public class JobQueueImpl<JOB extends AbstractJob> implements JobQueue<JOB> {
+
+    private static final String LEASE_EXPIRED_ERROR = "Lease expired on the last attempt";
+
+    private final Class<JOB> jobType;
+
+    private final JobQueueConfig config;
+
+    private final GeneralDao generalDao;
+
+    public JobQueueImpl(Class<JOB> jobType, JobQueueConfig config, GeneralDao generalDao) {
+        this.jobType = requireNonNull(jobType, "Expecting non-null jobType");
+        this.config = requireNonNull(config, "Expecting non-null config");
+        this.generalDao = requireNonNull(generalDao, "Expecting non-null generalDao");
+    }
+
+    @Override
+    public Class<JOB> jobType() {
+        return jobType;
+    }
+
+    @Override
+    public JobQueueConfig config() {
+        return config;
+    }
+
+    @Override
+    public void enqueue(EntityManager em, JOB job) {
+        persistReady(em, job, Instant.now());
+        notifyConsumers(em);
+    }
+
+    @Override
+    public void enqueueAll(EntityManager em, Collection<? extends JOB> jobs) {
+        if (jobs == null) {
+            throw new IllegalArgumentException("Required non-null jobs collection");
+        }
+        if (jobs.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        for (JOB job : jobs) {
+            persistReady(em, job, now);
+        }
+        notifyConsumers(em);
+    }
+
+    private void persistReady(EntityManager em, JOB job, Instant now) {
+        if (job == null) {
+            throw new IllegalArgumentException("Required non-null job");
+        }
+        job.setStatus(JobStatus.READY);
+        job.setAttemptCount(0);
+        job.setLeaseExpiresAt(null);
+        if (job.getAvailableAt() == null) {
+            job.setAvailableAt(now);
+        }
+        em.persist(job);
+    }
+
+    /**
+     * PostgreSQL delivers the notification when the transaction commits, so consumers never wake up too early.
+     * Identical notifications sent within one transaction are delivered only once.
+     */
+    @SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+    private void notifyConsumers(EntityManager em) {
+        if (isPostgres(em)) {
+            String sql = "select pg_notify(?, '')";
+            SessionImplementor session = em.unwrap(SessionImplementor.class);
+            session.doWork(connection -> {
+                try (var ps = connection.prepareStatement(sql)) {
+                    ps.setString(1, config.channel());
+                    ps.execute();
+                }
+            });
+        }
+    }
+
+    @Override
+    public List<JOB> claim(EntityManager em, int limit) {
+        if (!generalDao.getDatabaseCapabilities(em).supportsSkipLocked()) {
+            throw new IllegalStateException("Claiming jobs requires a database supporting SKIP LOCKED");
+        }
+        Instant now = Instant.now();
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<JOB> q = cb.createQuery(jobType);
+        Root<JOB> r = q.from(jobType);
+        Path<JobStatus> status = r.get(AbstractJob_.status);
+        Path<Instant> availableAt = r.get(AbstractJob_.availableAt);
+        Path<Instant> leaseExpiresAt = r.get(AbstractJob_.leaseExpiresAt);
+        q.where(cb.or(
+                cb.and(cb.equal(status, JobStatus.READY), cb.lessThanOrEqualTo(availableAt, now)),
+                cb.and(cb.equal(status, JobStatus.PROCESSING), cb.lessThan(leaseExpiresAt, now))
+        ));
+        q.orderBy(cb.asc(availableAt));
+
+        Instant leaseExpiration = now.plus(config.leaseDuration());
+        List<JOB> claimedJobs = new ArrayList<>();
+        while (claimedJobs.size() < limit) {
+            int requested = limit - claimedJobs.size();
+            List<JOB> jobs = generalDao.findForUpdateSkipLocked(em, q, requested);
+            int failedCount = 0;
+            for (JOB job : jobs) {
+                if (job.getStatus() == JobStatus.PROCESSING && job.getAttemptCount() >= config.maxAttempts()) {
+                    //The consumer of the last attempt died before it could nack the job
+                    job.setStatus(JobStatus.FAILED);
+                    job.setLeaseExpiresAt(null);
+                    job.setLastError(LEASE_EXPIRED_ERROR);
+                    failedCount++;
+                } else {
+                    job.setStatus(JobStatus.PROCESSING);
+                    job.setAttemptCount(job.getAttemptCount() + 1);
+                    job.setLeaseExpiresAt(leaseExpiration);
+                    claimedJobs.add(job);
+                }
+            }
+            //The failed jobs no longer match the query, which is auto-flushed before it runs again
+            if (failedCount == 0 || jobs.size() < requested) {
+                break;
+            }
+        }
+        return claimedJobs;
+    }
+
+    @Override
+    public boolean ack(EntityManager em, JOB claimedJob) {
+        JOB job = lockClaimed(em, claimedJob);
+        if (job == null) {
+            return false;
+        }
+        em.remove(job);
+        return true;
+    }
+
+    @Override
+    public boolean nack(EntityManager em, JOB claimedJob, String error) {
+        JOB job = lockClaimed(em, claimedJob);
+        if (job == null) {
+            return false;
+        }
+        int attemptCount = job.getAttemptCount();
+        if (attemptCount >= config.maxAttempts()) {
+            job.setStatus(JobStatus.FAILED);
+        } else {
+            job.setStatus(JobStatus.READY);
+            job.setAvailableAt(Instant.now().plus(config.retryDelay().multipliedBy(attemptCount)));
+        }
+        job.setLeaseExpiresAt(null);
+        job.setLastError(error == null || error.length() <= AbstractJob.MAX_ERROR_LENGTH
+                ? error
+                : error.substring(0, AbstractJob.MAX_ERROR_LENGTH));
+        return true;
+    }
+
+    /**
+     * Locks the job and returns it if it is still in the state the claim left it in,
+     * otherwise returns null. The attempt count tells apart the claims of the same job.
+     */
+    JOB lockClaimed(EntityManager em, JOB claimedJob) {
+        if (claimedJob == null) {
+            throw new IllegalArgumentException("Required non-null claimedJob");
+        }
+        Object id = em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(claimedJob);
+        JOB job = em.find(jobType, id, LockModeType.PESSIMISTIC_WRITE);
+        if (job == null
+            || job.getStatus() != JobStatus.PROCESSING
+            || job.getAttemptCount() != claimedJob.getAttemptCount()) {
+            return null;
+        }
+        return job;
+    }
+
+    @Override
+    public JobConsumer startConsumer(EntityManagerFactory emf, JobHandler<JOB> handler, int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Illegal concurrency: " + concurrency);
+        }
+        JobConsumerImpl<JOB> consumer = new JobConsumerImpl<>(
+                this,
+                requireNonNull(emf, "Expecting non-null emf"),
+                requireNonNull(handler, "Expecting non-null handler"),
+                concurrency
+        );
+        consumer.start();
+        return consumer;
+    }
+
+    boolean isPostgres(EntityManager em) {
+        return Database.POSTGRESQL == generalDao.getDatabaseCapabilities(em).database();
+    }
+
+    @Override
+    public String toString() {
+        return "JobQueue[" + jobType.getSimpleName() + ", " + config.channel() + "]";
+    }
+}
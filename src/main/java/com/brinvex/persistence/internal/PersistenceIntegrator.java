@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.internal;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+
+/**
+ * Resolves the per-factory state of this library once, when the session factory has been built,
+ * as the mapping metamodel is not yet available while integrators run,
+ * and appends the event listeners of this library.
+ * Discovered by Hibernate as a {@link java.util.ServiceLoader} service.
+ */
+public class PersistenceIntegrator implements Integrator {
+
+    @Override
+    public void integrate(
+            Metadata metadata,
+            BootstrapContext bootstrapContext,
+            SessionFactoryImplementor sessionFactory
+    ) {
+        EventListenerRegistry eventListenerRegistry = sessionFactory.getEventListenerRegistry();
+        eventListenerRegistry.appendListeners(EventType.POST_LOAD, StatementTrackerImpl.LOAD_LISTENER);
+        eventListenerRegistry.appendListeners(EventType.INIT_COLLECTION, StatementTrackerImpl.LOAD_LISTENER);
+
+        sessionFactory.addObserver(new SessionFactoryObserver() {
+            @Override
+            public void sessionFactoryCreated(SessionFactory factory) {
+                DatabaseCapabilitiesRegistry.register(sessionFactory);
+                EntityMetadataRegistry.register(sessionFactory);
+                QueryTemplateRegistry.register(sessionFactory);
+            }
+
+            @Override
+            public void sessionFactoryClosed(SessionFactory factory) {
+                DatabaseCapabilitiesRegistry.unregister(sessionFactory);
+                EntityMetadataRegistry.unregister(sessionFactory);
+                QueryTemplateRegistry.unregister(sessionFactory);
+            }
+        });
+    }
+}
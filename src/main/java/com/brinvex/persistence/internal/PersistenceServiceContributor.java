@@ -0,0 +1,41 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.internal;
+
+import com.brinvex.persistence.api.SlowQueryLog;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.service.spi.ServiceContributor;
+
+/**
+ * Replaces the Hibernate services which this library extends.
+ * Discovered by Hibernate as a {@link java.util.ServiceLoader} service.
+ * <p>
+ * As a service contributor takes part in building every service registry,
+ * the {@link org.hibernate.engine.jdbc.spi.SqlStatementLogger} of every session factory in the JVM is replaced
+ * by {@link CapturingSqlStatementLogger}, whether or not a slow query log or a statement tracker is ever used.
+ * With neither in use, the replacement costs one thread-local lookup per statement on top of the original logger.
+ * The replacement is skipped for a registry configured with {@link SlowQueryLog#CAPTURE_SQL_SETTING} set to {@code false}.
+ */
+public class PersistenceServiceContributor implements ServiceContributor {
+
+    @Override
+    public void contribute(StandardServiceRegistryBuilder serviceRegistryBuilder) {
+        Object captureSql = serviceRegistryBuilder.getSettings().get(SlowQueryLog.CAPTURE_SQL_SETTING);
+        if (captureSql == null || Boolean.parseBoolean(captureSql.toString())) {
+            serviceRegistryBuilder.addInitiator(CapturingSqlStatementLogger.INITIATOR);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.internal;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.metamodel.mapping.SelectableMapping;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.ZonedDateTime;
+import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+import static java.lang.String.format;
+
+/**
+ * Inserts entities by streaming them as CSV rows through the PostgreSQL {@code COPY ... FROM STDIN} protocol.
+ * Kept apart from {@link GeneralDaoImpl} because the PostgreSQL driver is an optional dependency.
+ */
+final class PostgresCopyInserter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private PostgresCopyInserter() {
+    }
+
+    static long insert(SessionImplementor session, Class<?> entityType, Collection<?> entities) {
+        EntityTableMapping tableMapping = EntityTableMapping.of(session, entityType);
+        String sql = format("COPY %s (%s) FROM STDIN WITH (FORMAT csv)",
+                tableMapping.tableName(), String.join(", ", tableMapping.columnNames()));
+
+        return session.doReturningWork(connection -> {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+            try {
+                StringBuilder buffer = new StringBuilder(BUFFER_SIZE + 1024);
+                for (Object entity : entities) {
+                    tableMapping.prepareForInsert(entity, session);
+                    appendRow(buffer, session, tableMapping, entity);
+                    if (buffer.length() >= BUFFER_SIZE) {
+                        write(copyIn, buffer);
+                    }
+                }
+                write(copyIn, buffer);
+                return copyIn.endCopy();
+            } catch (RuntimeException | SQLException e) {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+                throw e;
+            }
+        });
+    }
+
+    private static void appendRow(
+            StringBuilder buffer,
+            SessionImplementor session,
+            EntityTableMapping tableMapping,
+            Object entity
+    ) {
+        int[] columnIndex = {0};
+        tableMapping.forEachColumnValue(entity, session, (value, column) -> {
+            if (columnIndex[0]++ > 0) {
+                buffer.append(',');
+            }
+            if (value != null) {
+                //In the CSV format an unquoted empty value is NULL and a quoted one is an empty string
+                buffer.append('"').append(toText(value, column).replace("\"", "\"\"")).append('"');
+            }
+        });
+        buffer.append('\n');
+    }
+
+    private static String toText(Object value, SelectableMapping column) {
+        return switch (value) {
+            case String s -> s;
+            case Character c -> String.valueOf(c);
+            case Boolean b -> b.toString();
+            case java.math.BigDecimal n -> n.toPlainString();
+            case Number n -> n.toString();
+            case UUID u -> u.toString();
+            case ZonedDateTime t -> t.toOffsetDateTime().toString();
+            case TemporalAccessor t -> t.toString();
+            case java.sql.Date d -> d.toString();
+            case java.sql.Time t -> t.toString();
+            case java.sql.Timestamp t -> t.toString();
+            case java.util.Date d -> d.toInstant().toString();
+            case Enum<?> e -> column.getJdbcMapping().getJdbcType().isInteger() ? String.valueOf(e.ordinal()) : e.name();
+            case byte[] bytes -> "\\x" + HexFormat.of().formatHex(bytes);
+            case Object[] array -> toArrayText(Arrays.asList(array), column);
+            case Collection<?> collection -> toArrayText(collection, column);
+            default -> throw new IllegalArgumentException(format(
+                    "Unsupported value type %s of column %s", value.getClass(), column.getSelectionExpression()));
+        };
+    }
+
+    private static String toArrayText(Collection<?> items, SelectableMapping column) {
+        StringBuilder sb = new StringBuilder("{");
+        for (Object item : items) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            if (item == null) {
+                sb.append("NULL");
+            } else {
+                String itemText = toText(item, column).replace("\\", "\\\\").replace("\"", "\\\"");
+                sb.append('"').append(itemText).append('"');
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void write(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        if (!buffer.isEmpty()) {
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+    }
+}
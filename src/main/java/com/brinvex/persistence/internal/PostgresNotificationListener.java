@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.internal;
+
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * Listens to a PostgreSQL notification channel on a connection of its own,
+ * which is taken from the connection provider of the session factory and held until closed.
+ * Kept apart from {@link JobConsumerImpl} because the PostgreSQL driver is an optional dependency.
+ */
+final class PostgresNotificationListener implements AutoCloseable {
+
+    private final ConnectionProvider connectionProvider;
+
+    private final Connection connection;
+
+    private final PGConnection pgConnection;
+
+    @SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+    PostgresNotificationListener(SessionFactoryImplementor sessionFactory, String channel) throws SQLException {
+        this.connectionProvider = sessionFactory.getServiceRegistry().requireService(ConnectionProvider.class);
+        this.connection = connectionProvider.getConnection();
+        try {
+            //LISTEN takes effect when its transaction commits
+            connection.setAutoCommit(true);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("listen \"" + channel.replace("\"", "\"\"") + "\"");
+            }
+            this.pgConnection = connection.unwrap(PGConnection.class);
+        } catch (SQLException | RuntimeException e) {
+            connectionProvider.closeConnection(connection);
+            throw e;
+        }
+    }
+
+    /**
+     * Waits until a notification arrives or the timeout elapses.
+     * Notifications which arrived since the previous call return immediately.
+     *
+     * @return true if notified
+     */
+    boolean await(Duration timeout) throws SQLException {
+        PGNotification[] notifications = pgConnection.getNotifications((int) Math.min(Integer.MAX_VALUE, timeout.toMillis()));
+        return notifications != null && notifications.length > 0;
+    }
+
+    /**
+     * Stops listening before the connection goes back to the pool.
+     */
+    @SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+    @Override
+    public void close() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("unlisten *");
+        } finally {
+            connectionProvider.closeConnection(connection);
+        }
+    }
+}
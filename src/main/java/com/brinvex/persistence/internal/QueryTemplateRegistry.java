@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.internal;
+
+import com.brinvex.persistence.api.QueryTemplate;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.criteria.CriteriaQuery;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The criteria queries built from each {@link QueryTemplate} for each open session factory.
+ * The maps are registered by {@link PersistenceIntegrator} when a factory has been built and removed when it is closed,
+ * as the built queries reference the factory.
+ */
+public final class QueryTemplateRegistry {
+
+    private static final Map<SessionFactoryImplementor, Map<QueryTemplate<?>, CriteriaQuery<?>>> SF_2_QUERIES = new ConcurrentHashMap<>();
+
+    private QueryTemplateRegistry() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <R> CriteriaQuery<R> criteriaQuery(
+            EntityManagerFactory emf,
+            QueryTemplate<R> template,
+            QueryTemplate.Definition<R> definition
+    ) {
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        Map<QueryTemplate<?>, CriteriaQuery<?>> queries = SF_2_QUERIES.get(sessionFactory);
+        if (queries == null) {
+            //The integrator was not discovered, e.g. due to a custom class loading setup
+            queries = SF_2_QUERIES.computeIfAbsent(sessionFactory, sf -> {
+                sf.addObserver(new SessionFactoryObserver() {
+                    @Override
+                    public void sessionFactoryClosed(SessionFactory factory) {
+                        unregister(sf);
+                    }
+                });
+                return new ConcurrentHashMap<>();
+            });
+        }
+        CriteriaQuery<?> q = queries.get(template);
+        if (q == null) {
+            q = queries.computeIfAbsent(template, _ -> requireNonNull(
+                    definition.define(sessionFactory.getCriteriaBuilder()),
+                    () -> "Query template definition returned null: " + template.name()));
+        }
+        return (CriteriaQuery<R>) q;
+    }
+
+    static void register(SessionFactoryImplementor sessionFactory) {
+        SF_2_QUERIES.put(sessionFactory, new ConcurrentHashMap<>());
+    }
+
+    static void unregister(SessionFactoryImplementor sessionFactory) {
+        SF_2_QUERIES.remove(sessionFactory);
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.internal;
+
+import com.brinvex.persistence.api.BindValueMasking;
+import com.brinvex.persistence.api.GeneralDaoInvocation;
+import com.brinvex.persistence.api.SlowQueryLog;
+import com.brinvex.persistence.api.SlowQueryLogConfig;
+import com.brinvex.persistence.api.SlowQueryRecord;
+import org.hibernate.query.sqm.tree.SqmStatement;
+import org.hibernate.query.sqm.tree.expression.SqmParameter;
+import org.hibernate.query.sqm.tree.expression.ValueBindJpaCriteriaParameter;
+
+import java.lang.System.Logger.Level;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+public final class SlowQueryLogImpl implements SlowQueryLog {
+
+    private static final System.Logger LOG = System.getLogger("com.brinvex.persistence.SlowQueryLog");
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    private static final int MAX_STACK_DEPTH = 128;
+
+    private static final int MAX_RENDERED_VALUE_LENGTH = 100;
+
+    private static final int MAX_RENDERED_ITEMS = 10;
+
+    private record Slot(long sequence, SlowQueryRecord record) {
+    }
+
+    private final SlowQueryLogConfig config;
+
+    private final long thresholdNanos;
+
+    /**
+     * Producers claim a sequence and publish their record into its slot without any lock;
+     * a record whose slot was claimed again before it was drained is overwritten
+     */
+    private final AtomicReferenceArray<Slot> slots;
+
+    private final AtomicLong writeSequence = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * Guarded by {@code this}, only consumers synchronize
+     */
+    private long readSequence;
+
+    private volatile boolean running = true;
+
+    private Thread logger;
+
+    private SlowQueryLogImpl(SlowQueryLogConfig config) {
+        this.config = config;
+        this.thresholdNanos = config.threshold().toNanos();
+        this.slots = new AtomicReferenceArray<>(config.capacity());
+    }
+
+    public static SlowQueryLog create(SlowQueryLogConfig config) {
+        requireNonNull(config, "Expecting non-null config");
+        SlowQueryLogImpl slowQueryLog = new SlowQueryLogImpl(config);
+        if (config.logInterval() != null) {
+            slowQueryLog.logger = Thread.ofVirtual().name("slow-query-log").start(slowQueryLog::logPeriodically);
+        }
+        return slowQueryLog;
+    }
+
+    @Override
+    public SlowQueryLogConfig config() {
+        return config;
+    }
+
+    @Override
+    public Object intercept(GeneralDaoInvocation invocation) {
+        List<String> enclosingCapture = CapturingSqlStatementLogger.beginCapture();
+        long start = System.nanoTime();
+        Object result = null;
+        RuntimeException failure = null;
+        try {
+            result = invocation.proceed();
+            return result;
+        } catch (RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            long elapsedNanos = System.nanoTime() - start;
+            List<String> sql = CapturingSqlStatementLogger.endCapture(enclosingCapture);
+            if (elapsedNanos >= thresholdNanos) {
+                try {
+                    offer(createRecord(invocation, sql, result, elapsedNanos, failure));
+                } catch (RuntimeException e) {
+                    LOG.log(Level.DEBUG, "Slow query could not be recorded", e);
+                }
+            }
+        }
+    }
+
+    private SlowQueryRecord createRecord(
+            GeneralDaoInvocation invocation,
+            List<String> sql,
+            Object result,
+            long elapsedNanos,
+            RuntimeException failure
+    ) {
+        StackWalker.StackFrame caller = findCaller();
+        return new SlowQueryRecord(
+                Instant.now(),
+                caller == null ? null : caller.getClassName(),
+                caller == null ? null : caller.getMethodName(),
+                invocation.operation(),
+                invocation.entityType(),
+                sql,
+                renderBindValues(invocation),
+                failure == null ? invocation.resultSize(result) : 0,
+                Duration.ofNanos(elapsedNanos),
+                failure == null ? null : failure.getClass().getName()
+        );
+    }
+
+    /**
+     * The first frame below the {@link com.brinvex.persistence.api.GeneralDao} proxy
+     * which is not part of this library, e.g. a method of a subclass of
+     * {@link com.brinvex.persistence.api.AbstractEntityDao}.
+     * Interceptors run above the proxy frame, so they are never reported as the caller.
+     * The innermost proxy frame is the one of the GeneralDao, proxies further down the stack wrap the caller.
+     */
+    private static StackWalker.StackFrame findCaller() {
+        List<StackWalker.StackFrame> stack = STACK_WALKER.walk(frames -> frames.limit(MAX_STACK_DEPTH).toList());
+        int start = 0;
+        for (int i = 0; i < stack.size(); i++) {
+            if (stack.get(i).getClassName().contains("$Proxy")) {
+                start = i + 1;
+                break;
+            }
+        }
+        for (int i = start; i < stack.size(); i++) {
+            String className = stack.get(i).getClassName();
+            if (!className.startsWith("com.brinvex.persistence.")
+                && !className.startsWith("java.")
+                && !className.startsWith("jdk.")
+                && !className.contains("$Proxy")) {
+                return stack.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The values bound to the criteria query of the operation, the parameters of a query template
+     * and the collections passed to the operation, e.g. the ids of {@code findByIds}
+     */
+    private List<String> renderBindValues(GeneralDaoInvocation invocation) {
+        List<String> bindValues = new ArrayList<>();
+        //The values bound by the criteria builder are left out of getParameters(), which lists explicit parameters only
+        if (invocation.query() instanceof SqmStatement<?> query) {
+            for (SqmParameter<?> parameter : query.getSqmParameters()) {
+                if (parameter instanceof ValueBindJpaCriteriaParameter<?> valueParameter) {
+                    bindValues.add(render(valueParameter.getValue()));
+                }
+            }
+        }
+        for (Object argument : invocation.arguments()) {
+            switch (argument) {
+                case Map<?, ?> parameters -> parameters.forEach((name, value) -> bindValues.add(name + "=" + render(value)));
+                case Collection<?> values -> bindValues.add(render(values));
+                case null, default -> {
+                }
+            }
+        }
+        return List.copyOf(bindValues);
+    }
+
+    private String render(Object value) {
+        String rendered = switch (value) {
+            case null -> "null";
+            case Collection<?> items -> renderItems(items);
+            case Object[] items -> renderItems(Arrays.asList(items));
+            default -> switch (config.bindValueMasking()) {
+                case NONE -> String.valueOf(value);
+                case MASK_TEXT -> isMaskedAsText(value) ? mask(value) : String.valueOf(value);
+                case MASK_ALL -> mask(value);
+            };
+        };
+        return rendered.length() <= MAX_RENDERED_VALUE_LENGTH
+                ? rendered
+                : rendered.substring(0, MAX_RENDERED_VALUE_LENGTH) + "...";
+    }
+
+    private String renderItems(Collection<?> items) {
+        StringJoiner rendered = new StringJoiner(", ", "[", "]");
+        int i = 0;
+        for (Object item : items) {
+            if (i++ == MAX_RENDERED_ITEMS) {
+                rendered.add(format("... %s items", items.size()));
+                break;
+            }
+            rendered.add(render(item));
+        }
+        return rendered.toString();
+    }
+
+    private static boolean isMaskedAsText(Object value) {
+        return !(value instanceof Number
+                 || value instanceof Boolean
+                 || value instanceof TemporalAccessor
+                 || value instanceof java.util.Date
+                 || value instanceof Enum<?>
+                 || value instanceof UUID);
+    }
+
+    private static String mask(Object value) {
+        return "***(" + value.getClass().getSimpleName() + ")";
+    }
+
+    /**
+     * A producer delayed between claiming its sequence and publishing must not overwrite
+     * a newer record published into the same slot meanwhile, so its own record is dropped instead.
+     */
+    private void offer(SlowQueryRecord record) {
+        long sequence = writeSequence.getAndIncrement();
+        int index = index(sequence);
+        Slot published = new Slot(sequence, record);
+        Slot current;
+        do {
+            current = slots.get(index);
+            if (current != null && current.sequence() > sequence) {
+                //Counted as dropped by the drain which finds the newer record in place of this one
+                return;
+            }
+        } while (!slots.compareAndSet(index, current, published));
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % slots.length());
+    }
+
+    @Override
+    public synchronized List<SlowQueryRecord> drain() {
+        long end = writeSequence.get();
+        long sequence = Math.max(readSequence, end - slots.length());
+        droppedCount.addAndGet(sequence - readSequence);
+        List<SlowQueryRecord> records = new ArrayList<>();
+        for (; sequence < end; sequence++) {
+            Slot slot = slots.get(index(sequence));
+            if (slot == null || slot.sequence() < sequence) {
+                //Claimed but not published yet, left for the next drain
+                break;
+            }
+            if (slot.sequence() > sequence) {
+                droppedCount.incrementAndGet();
+            } else {
+                records.add(slot.record());
+            }
+        }
+        readSequence = sequence;
+        return records;
+    }
+
+    @Override
+    public long droppedCount() {
+        return droppedCount.get();
+    }
+
+    private void logPeriodically() {
+        while (running) {
+            try {
+                Thread.sleep(config.logInterval());
+            } catch (InterruptedException e) {
+                break;
+            }
+            logRecords();
+        }
+    }
+
+    private void logRecords() {
+        long droppedBefore = droppedCount.get();
+        for (SlowQueryRecord record : drain()) {
+            LOG.log(Level.WARNING, format(
+                    "Slow %s of %s took %s ms, called from %s.%s, rows: %s, failure: %s, bind values: %s, sql: %s",
+                    record.operation(),
+                    record.entityType() == null ? null : record.entityType().getSimpleName(),
+                    record.elapsed().toMillis(),
+                    record.callerClass(),
+                    record.callerMethod(),
+                    record.rowCount(),
+                    record.failure(),
+                    record.bindValues(),
+                    String.join("; ", record.sql())
+            ));
+        }
+        long dropped = droppedCount.get() - droppedBefore;
+        if (dropped > 0) {
+            LOG.log(Level.WARNING, format("%s slow queries were dropped, the buffer capacity is %s", dropped, config.capacity()));
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (logger != null) {
+            logger.interrupt();
+            try {
+                logger.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            logRecords();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.internal;
+
+import com.brinvex.persistence.api.StatementBudget;
+import com.brinvex.persistence.api.StatementBudgetMode;
+import com.brinvex.persistence.api.StatementStats;
+import com.brinvex.persistence.api.StatementTracker;
+import jakarta.persistence.PersistenceException;
+import jakarta.persistence.TransactionRequiredException;
+import org.hibernate.SessionEventListener;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.spi.InitializeCollectionEvent;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+
+import java.io.Serial;
+import java.lang.System.Logger.Level;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.String.format;
+
+/**
+ * Counts the statements, entity loads and collection loads of one transaction and checks them against a budget.
+ * <p>
+ * Statements are counted by a listener registered once per session, which holds the tracker
+ * of the current transaction. Loads are counted by {@link #LOAD_LISTENER}, which
+ * {@link PersistenceIntegrator} appends to the post-load and collection initialization events.
+ * Repetitions are counted for select statements only, as the repeated inserts and updates
+ * of a flush are expected.
+ */
+final class StatementTrackerImpl implements StatementTracker {
+
+    private static final System.Logger LOG = System.getLogger("com.brinvex.persistence.StatementTracker");
+
+    private static final Map<SharedSessionContractImplementor, SessionListener> SESSION_2_LISTENER = new ConcurrentHashMap<>();
+
+    static final LoadListener LOAD_LISTENER = new LoadListener();
+
+    private final StatementBudget budget;
+
+    private final Map<String, Integer> selectCounts = new HashMap<>();
+
+    private final Set<String> exceededLimits = new HashSet<>();
+
+    private int statementCount;
+
+    private int entityLoadCount;
+
+    private int collectionLoadCount;
+
+    private String mostRepeatedStatement;
+
+    private int mostRepeatedStatementCount;
+
+    private StatementTrackerImpl(StatementBudget budget) {
+        this.budget = budget;
+    }
+
+    static StatementTracker start(SharedSessionContractImplementor session, StatementBudget budget) {
+        if (!session.isTransactionInProgress()) {
+            throw new TransactionRequiredException("Tracking statements requires an active transaction");
+        }
+        SessionListener listener = SESSION_2_LISTENER.computeIfAbsent(session, s -> {
+            SessionListener sessionListener = new SessionListener(s);
+            s.getEventListenerManager().addListener(sessionListener);
+            return sessionListener;
+        });
+        if (listener.tracker != null) {
+            throw new IllegalStateException("Statements of the current transaction are already tracked");
+        }
+        StatementTrackerImpl tracker = new StatementTrackerImpl(budget);
+        listener.tracker = tracker;
+        return tracker;
+    }
+
+    static boolean isTrackingAny() {
+        return !SESSION_2_LISTENER.isEmpty();
+    }
+
+    private static StatementTrackerImpl current(SharedSessionContractImplementor session) {
+        if (SESSION_2_LISTENER.isEmpty()) {
+            return null;
+        }
+        SessionListener listener = SESSION_2_LISTENER.get(session);
+        return listener == null ? null : listener.tracker;
+    }
+
+    @Override
+    public StatementBudget budget() {
+        return budget;
+    }
+
+    @Override
+    public StatementStats stats() {
+        return new StatementStats(statementCount, entityLoadCount, collectionLoadCount,
+                mostRepeatedStatement, mostRepeatedStatementCount);
+    }
+
+    private void onStatement(String sql) {
+        check("statements", ++statementCount, budget.maxStatements(), null);
+        if (sql != null && isSelect(sql)) {
+            int count = selectCounts.merge(sql, 1, Integer::sum);
+            if (count > mostRepeatedStatementCount) {
+                mostRepeatedStatement = sql;
+                mostRepeatedStatementCount = count;
+            }
+            check("repetitions of one statement", count, budget.maxRepetitions(), sql);
+        }
+    }
+
+    private void onEntityLoad() {
+        check("entity loads", ++entityLoadCount, budget.maxEntityLoads(), null);
+    }
+
+    private void onCollectionLoad() {
+        check("collection loads", ++collectionLoadCount, budget.maxCollectionLoads(), null);
+    }
+
+    private void check(String counted, int count, int limit, String sql) {
+        if (count <= limit) {
+            return;
+        }
+        String message = format("Statement budget of the current transaction exceeded, %s: %s, limit: %s%s",
+                counted, count, limit, sql == null ? "" : ", statement: " + sql);
+        if (budget.mode() == StatementBudgetMode.FAIL) {
+            throw new PersistenceException(message);
+        }
+        if (exceededLimits.add(counted)) {
+            LOG.log(Level.WARNING, message);
+        }
+    }
+
+    private static boolean isSelect(String sql) {
+        String statement = sql.stripLeading();
+        //Skip a leading comment, e.g. added by hibernate.use_sql_comments
+        if (statement.startsWith("/*")) {
+            int commentEnd = statement.indexOf("*/");
+            statement = commentEnd < 0 ? "" : statement.substring(commentEnd + 2).stripLeading();
+        }
+        String keyword = statement.substring(0, Math.min(statement.length(), 6)).toLowerCase(Locale.ROOT);
+        return keyword.equals("select") || keyword.startsWith("with");
+    }
+
+    private static final class SessionListener implements SessionEventListener {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final transient SharedSessionContractImplementor session;
+
+        private transient StatementTrackerImpl tracker;
+
+        private SessionListener(SharedSessionContractImplementor session) {
+            this.session = session;
+        }
+
+        @Override
+        public void jdbcPrepareStatementStart() {
+            //Taken even if this session is not tracked, so the statement is not left behind on the thread
+            String sql = CapturingSqlStatementLogger.takeLastStatement();
+            if (tracker != null) {
+                tracker.onStatement(sql);
+            }
+        }
+
+        @Override
+        public void transactionCompletion(boolean successful) {
+            tracker = null;
+        }
+
+        @Override
+        public void end() {
+            SESSION_2_LISTENER.remove(session);
+        }
+    }
+
+    static final class LoadListener implements PostLoadEventListener, InitializeCollectionEventListener {
+
+        private LoadListener() {
+        }
+
+        @Override
+        public void onPostLoad(PostLoadEvent event) {
+            StatementTrackerImpl tracker = current(event.getSession());
+            if (tracker != null) {
+                tracker.onEntityLoad();
+            }
+        }
+
+        @Override
+        public void onInitializeCollection(InitializeCollectionEvent event) {
+            StatementTrackerImpl tracker = current(event.getSession());
+            if (tracker != null) {
+                tracker.onCollectionLoad();
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.persistence.internal;
+
+import jakarta.persistence.TransactionRequiredException;
+import org.hibernate.SessionEventListener;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import java.io.Serial;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Tracks the PostgreSQL {@code lock_timeout} in effect in the current transaction of a session,
+ * so that {@code set local lock_timeout} is sent only when the value actually changes.
+ * <p>
+ * After a lock acquisition, the timeout is not reset right away. The reset is deferred
+ * until the session prepares its next statement which is not part of a lock acquisition,
+ * so consecutive lock acquisitions with the same timeout cost no extra round trips at all.
+ * The tracked value is forgotten at the end of each transaction, together with the effect of {@code set local}.
+ * <p>
+ * Statements flushed by the lock acquisition itself run with its timeout.
+ * Plain JDBC work (e.g. {@code Session.doWork}) is not observed, so it may run with a not yet reset timeout.
+ * A {@code lock_timeout} set by other means than this class is not tracked.
+ * <p>
+ * The instance of a session is registered as its event listener and looked up by a map,
+ * from which it removes itself when the session ends.
+ */
+final class TransactionLockTimeout implements SessionEventListener {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private static final Map<SessionImplementor, TransactionLockTimeout> SESSION_2_LOCK_TIMEOUT = new ConcurrentHashMap<>();
+
+    private final transient SessionImplementor session;
+
+    /**
+     * The timeout in effect, zero is the PostgreSQL default which disables the timeout
+     */
+    private long effectiveMillis;
+
+    private boolean resetPending;
+
+    private boolean lockAcquisitionInProgress;
+
+    private TransactionLockTimeout(SessionImplementor session) {
+        this.session = session;
+    }
+
+    static TransactionLockTimeout of(SessionImplementor session) {
+        TransactionLockTimeout lockTimeout = SESSION_2_LOCK_TIMEOUT.get(session);
+        if (lockTimeout == null) {
+            lockTimeout = SESSION_2_LOCK_TIMEOUT.computeIfAbsent(session, s -> {
+                TransactionLockTimeout newLockTimeout = new TransactionLockTimeout(s);
+                s.getEventListenerManager().addListener(newLockTimeout);
+                return newLockTimeout;
+            });
+        }
+        return lockTimeout;
+    }
+
+    /**
+     * Sets the timeout for the rest of the current transaction.
+     */
+    void set(Duration timeout) {
+        resetPending = false;
+        apply(timeout.toMillis());
+    }
+
+    /**
+     * Runs the lock acquisition with the given timeout and leaves the timeout to be reset lazily.
+     */
+    <R> R acquire(Duration timeout, Supplier<R> lockAcquisition) {
+        long timeoutMillis = timeout.toMillis();
+        apply(timeoutMillis);
+        lockAcquisitionInProgress = true;
+        try {
+            return lockAcquisition.get();
+        } finally {
+            lockAcquisitionInProgress = false;
+            resetPending = timeoutMillis != 0;
+        }
+    }
+
+    private void apply(long timeoutMillis) {
+        if (!session.isTransactionInProgress()) {
+            throw new TransactionRequiredException("Setting a transaction-scoped lock timeout requires an active transaction");
+        }
+        if (timeoutMillis != effectiveMillis) {
+            execute(timeoutMillis);
+        }
+    }
+
+    @SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+    private void execute(long timeoutMillis) {
+        /*
+        The physical connection is used directly, without going through the session,
+        as this may run in the middle of preparing another statement.
+        A statement executed this way is logged, but neither flushed before nor reported to the session listeners.
+         */
+        String sql = "set local lock_timeout = " + timeoutMillis;
+        CapturingSqlStatementLogger.logSideStatement(session.getJdbcServices().getSqlStatementLogger(), sql);
+        Connection connection = session.getJdbcCoordinator().getLogicalConnection().getPhysicalConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            throw session.getJdbcServices().getSqlExceptionHelper().convert(e, "Could not set lock timeout", sql);
+        }
+        effectiveMillis = timeoutMillis;
+    }
+
+    @Override
+    public void jdbcPrepareStatementStart() {
+        if (resetPending && !lockAcquisitionInProgress) {
+            resetPending = false;
+            execute(0);
+        }
+    }
+
+    @Override
+    public void transactionCompletion(boolean successful) {
+        effectiveMillis = 0;
+        resetPending = false;
+    }
+
+    @Override
+    public void end() {
+        SESSION_2_LOCK_TIMEOUT.remove(session);
+    }
+}
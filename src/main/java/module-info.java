@@ -1,6 +1,13 @@
 module com.brinvex.persistence {
     exports com.brinvex.persistence.api;
+    opens com.brinvex.persistence.api to org.hibernate.orm.core;
     requires transitive jakarta.annotation;
     requires transitive jakarta.persistence;
     requires org.hibernate.orm.core;
+    requires java.naming;
+    requires java.sql;
+    requires jdk.jfr;
+    requires static org.postgresql.jdbc;
+    provides org.hibernate.integrator.spi.Integrator with com.brinvex.persistence.internal.PersistenceIntegrator;
+    provides org.hibernate.service.spi.ServiceContributor with com.brinvex.persistence.internal.PersistenceServiceContributor;
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ module test.brinvex.persistence {
     requires org.junit.jupiter.api;
     requires org.junit.jupiter.engine;
     requires org.slf4j;
+    requires jdk.jfr;
     opens test.com.brinvex.persistence.infra to org.junit.platform.commons;
     opens test.com.brinvex.persistence to org.junit.platform.commons;
     opens test.com.brinvex.persistence.dm to org.hibernate.orm.core;
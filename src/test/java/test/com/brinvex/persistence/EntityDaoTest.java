@@ -15,46 +15,97 @@
  */
 package test.com.brinvex.persistence;
 
+import com.brinvex.persistence.api.BatchWriteStats;
+import com.brinvex.persistence.api.BindValueMasking;
+import com.brinvex.persistence.api.ChunkCompletionMode;
+import com.brinvex.persistence.api.DatabaseCapabilities;
+import com.brinvex.persistence.api.EntityMetadata;
 import com.brinvex.persistence.api.Filter;
+import com.brinvex.persistence.api.GeneralDao;
+import com.brinvex.persistence.api.GeneralDaoInterceptor;
+import com.brinvex.persistence.api.InListPadding;
+import com.brinvex.persistence.api.KeysetPage;
+import com.brinvex.persistence.api.PageWithTotal;
+import com.brinvex.persistence.api.QueryReadMode;
+import com.brinvex.persistence.api.QueryTemplate;
+import com.brinvex.persistence.api.ResultOrderMode;
+import com.brinvex.persistence.api.Slice;
+import com.brinvex.persistence.api.SlowQueryLog;
+import com.brinvex.persistence.api.SlowQueryLogConfig;
+import com.brinvex.persistence.api.SlowQueryRecord;
+import com.brinvex.persistence.api.StatementBudget;
+import com.brinvex.persistence.api.StatementBudgetMode;
+import com.brinvex.persistence.api.StatementStats;
+import com.brinvex.persistence.api.StatementTracker;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.LockModeType;
 import jakarta.persistence.LockTimeoutException;
 import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.Persistence;
+import jakarta.persistence.PersistenceException;
 import jakarta.persistence.TransactionRequiredException;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Root;
 import jakarta.persistence.criteria.Selection;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.hibernate.Hibernate;
 import org.hibernate.LazyInitializationException;
 import org.hibernate.LockMode;
 import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.dialect.Database;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import test.com.brinvex.persistence.dao.EmployeeDao;
 import test.com.brinvex.persistence.dao.SalaryDao;
+import test.com.brinvex.persistence.dao.SalaryStatelessDao;
 import test.com.brinvex.persistence.dm.Employee;
 import test.com.brinvex.persistence.dm.Employee_;
 import test.com.brinvex.persistence.dm.Salary;
+import test.com.brinvex.persistence.dm.Salary_;
 import test.com.brinvex.persistence.infra.AbstractTest;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.lang.reflect.Proxy;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
+import static java.lang.String.format;
 import static java.time.LocalDate.parse;
 import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toSet;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 @SuppressWarnings("LoggingSimilarMessage")
@@ -175,6 +226,220 @@ public class EntityDaoTest extends AbstractTest {
         }
     }
 
+    @Test
+    void queryTemplate() {
+        QueryTemplate<Employee> findByName = QueryTemplate.of("findByName", cb -> {
+            CriteriaQuery<Employee> q = cb.createQuery(Employee.class);
+            Root<Employee> r = q.from(Employee.class);
+            q.where(cb.equal(r.get(Employee_.name), cb.parameter(String.class, "name")));
+            return q;
+        });
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        Employee alice = doInTx(em -> {
+            return GeneralDao.INSTANCE.findFirst(em, findByName, Map.of("name", emp1.getName()));
+        });
+        long planCacheHits = statistics.getQueryPlanCacheHitCount();
+        Employee bob = doInTx(em -> {
+            return GeneralDao.INSTANCE.findFirst(em, findByName, Map.of("name", emp2.getName()));
+        });
+        assertEquals(emp1.getId(), alice.getId());
+        assertEquals(emp2.getId(), bob.getId());
+        assertEquals(planCacheHits + 1, statistics.getQueryPlanCacheHitCount());
+        assertSame(findByName.criteriaQuery(emf), findByName.criteriaQuery(emf));
+    }
+
+    @Test
+    void persistAllInBatches() {
+        List<Salary> salaries = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            Salary salary = new Salary();
+            salary.setEmployee(emp1);
+            salary.setDate(parse("2023-03-01").plusDays(i));
+            salary.setAmount(BigDecimal.valueOf(i));
+            salaries.add(salary);
+        }
+        BatchWriteStats stats = doInTx(em -> {
+            Employee alice = em.find(Employee.class, emp1.getId());
+            BatchWriteStats s = new SalaryDao(em).persistAll(salaries, 2);
+            assertFalse(em.contains(salaries.getFirst()));
+            assertTrue(em.contains(alice));
+            return s;
+        });
+        assertEquals(5, stats.entityCount());
+        assertEquals(3, stats.flushCount());
+
+        List<Salary> persisted = doInTx(em -> {
+            return new SalaryDao(em).findByIds(salaries.stream().map(Salary::getId).toList());
+        });
+        assertEquals(5, persisted.size());
+    }
+
+    @Test
+    void bulkInsert() {
+        List<Salary> salaries = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            Salary salary = new Salary();
+            salary.setEmployee(emp2);
+            salary.setDate(parse("2023-04-01").plusDays(i));
+            salary.setAmount(new BigDecimal("100.5").multiply(BigDecimal.valueOf(i)));
+            salaries.add(salary);
+        }
+        long insertedCount = doInTx(em -> {
+            long n = new SalaryDao(em).bulkInsert(salaries);
+            assertFalse(em.contains(salaries.getFirst()));
+            return n;
+        });
+        assertEquals(3, insertedCount);
+        assertTrue(salaries.stream().allMatch(s -> s.getId() != null));
+
+        List<Salary> inserted = doInTx(em -> {
+            return new SalaryDao(em).findByIdsInRequestedOrder(salaries.stream().map(Salary::getId).toList());
+        });
+        for (int i = 0; i < salaries.size(); i++) {
+            assertEquals(salaries.get(i).getDate(), inserted.get(i).getDate());
+            assertEquals(0, salaries.get(i).getAmount().compareTo(inserted.get(i).getAmount()));
+            assertEquals(emp2.getId(), inserted.get(i).getEmployee().getId());
+        }
+    }
+
+    @Test
+    void upsertAll() {
+        Employee changedEmp1 = new Employee();
+        changedEmp1.setId(emp1.getId());
+        changedEmp1.setName("Alice Smith");
+        changedEmp1.setValidFrom(emp1.getValidFrom());
+        changedEmp1.setValidTo(emp1.getValidTo());
+
+        Employee emp3 = new Employee();
+        emp3.setName("Carol");
+        emp3.setValidFrom(parse("2023-03-01").atStartOfDay());
+        emp3.setPhoneNumbers(new String[]{"+421 900 000 003"});
+
+        long upsertedCount = doInTx(em -> {
+            return new EmployeeDao(em).upsertAll(List.of(changedEmp1, emp3), List.of(Employee_.id));
+        });
+        assertEquals(2, upsertedCount);
+        assertNotNull(emp3.getId());
+        assertEquals(emp1.getVersion() + 1, changedEmp1.getVersion());
+
+        Employee updated = doInTx(em -> {
+            return new EmployeeDao(em).getById(emp1.getId());
+        });
+        assertEquals("Alice Smith", updated.getName());
+        assertEquals(emp1.getVersion() + 1, updated.getVersion());
+
+        Employee inserted = doInTx(em -> {
+            return new EmployeeDao(em).getById(emp3.getId());
+        });
+        assertEquals("Carol", inserted.getName());
+        assertArrayEquals(emp3.getPhoneNumbers(), inserted.getPhoneNumbers());
+
+        //An existing row matched by a key other than the id keeps its id
+        Salary changedSalary1_2 = new Salary();
+        changedSalary1_2.setEmployee(emp1);
+        changedSalary1_2.setDate(salary1_2.getDate());
+        changedSalary1_2.setAmount(new BigDecimal("160"));
+        doInTx(em -> {
+            return new SalaryDao(em).upsertAll(List.of(changedSalary1_2), List.of(Salary_.employee, Salary_.date));
+        });
+        assertEquals(salary1_2.getId(), changedSalary1_2.getId());
+        Salary updatedSalary = doInTx(em -> {
+            return new SalaryDao(em).getById(salary1_2.getId());
+        });
+        assertEquals(0, new BigDecimal("160").compareTo(updatedSalary.getAmount()));
+    }
+
+    @Test
+    void pageWithTotal() {
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em);
+            PageWithTotal<Salary> page1 = salaryDao.findPage(0, 4);
+            assertEquals(4, page1.results().size());
+            assertEquals(6, page1.totalCount());
+
+            PageWithTotal<Salary> page2 = salaryDao.findPage(4, 4);
+            assertEquals(
+                    List.of(salary2_2.getId(), salary2_3.getId()),
+                    page2.results().stream().map(Salary::getId).toList()
+            );
+            assertEquals(6, page2.totalCount());
+
+            PageWithTotal<Salary> page3 = salaryDao.findPage(8, 4);
+            assertTrue(page3.results().isEmpty());
+            assertEquals(6, page3.totalCount());
+
+            PageWithTotal<LocalDate> distinctDates = salaryDao.findDistinctDatesPage(0, 2);
+            assertEquals(List.of(parse("2023-02-01"), parse("2023-02-02")), distinctDates.results());
+            assertEquals(3, distinctDates.totalCount());
+        });
+    }
+
+    @Test
+    void slice() {
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em);
+            Slice<Salary> slice1 = salaryDao.findSlice(0, 3);
+            assertEquals(3, slice1.results().size());
+            assertTrue(slice1.hasNext());
+
+            Slice<Salary> slice2 = salaryDao.findSlice(3, 3);
+            assertEquals(3, slice2.results().size());
+            assertFalse(slice2.hasNext());
+        });
+    }
+
+    @Test
+    void keysetPagination() {
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em);
+            KeysetPage<Salary> page1 = salaryDao.findPageOrderedByDate(null, 4);
+            assertEquals(
+                    List.of(salary1_1.getId(), salary2_1.getId(), salary1_2.getId(), salary2_2.getId()),
+                    page1.results().stream().map(Salary::getId).toList()
+            );
+            assertTrue(page1.hasNext());
+            assertEquals(List.of(salary2_2.getDate(), salary2_2.getId()), page1.nextKey());
+
+            KeysetPage<Salary> page2 = salaryDao.findPageOrderedByDate(page1.nextKey(), 4);
+            assertEquals(
+                    List.of(salary1_3.getId(), salary2_3.getId()),
+                    page2.results().stream().map(Salary::getId).toList()
+            );
+            assertFalse(page2.hasNext());
+
+            List<Object> keyWithNull = Arrays.asList(salary2_2.getDate(), null);
+            assertThrows(IllegalArgumentException.class, () -> salaryDao.findPageOrderedByDate(keyWithNull, 4));
+        });
+    }
+
+    @Test
+    void stream() {
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em);
+            Employee alice = em.find(Employee.class, emp1.getId());
+            List<Salary> salaries;
+            try (Stream<Salary> stream = salaryDao.streamAll(2, 2)) {
+                salaries = stream
+                        .peek(s -> assertTrue(em.contains(s)))
+                        .peek(s -> assertNotNull(s.getEmployee().getName()))
+                        .toList();
+            }
+            assertEquals(
+                    List.of(salary1_1.getId(), salary1_2.getId(), salary1_3.getId(),
+                            salary2_1.getId(), salary2_2.getId(), salary2_3.getId()),
+                    salaries.stream().map(Salary::getId).toList()
+            );
+            assertEquals(
+                    List.of(false, false, false, false, true, true),
+                    salaries.stream().map(em::contains).toList()
+            );
+            //Associations loaded while consuming are evicted too, entities managed before are kept
+            assertFalse(em.contains(Hibernate.unproxy(salaries.get(3).getEmployee())));
+            assertTrue(em.contains(alice));
+        });
+    }
+
     @Test
     void findByIdAsDto() {
         long salaryId = salary1_1.getId();
@@ -245,6 +510,541 @@ public class EntityDaoTest extends AbstractTest {
         }
     }
 
+    @Test
+    void collectionFilter_powerOfTwoPadding() {
+        SlowQueryLogConfig config = new SlowQueryLogConfig(Duration.ZERO, 10, BindValueMasking.NONE, null);
+        try (SlowQueryLog slowQueryLog = SlowQueryLog.create(config)) {
+            GeneralDao generalDao = GeneralDao.withInterceptors(GeneralDao.INSTANCE, List.of(slowQueryLog));
+            List<Salary> salaries = doInTx(em -> {
+                return new SalaryDao(em, generalDao).findByDates(
+                        emp1.getId(),
+                        List.of(salary1_1.getDate(), salary1_2.getDate(), salary1_3.getDate()),
+                        InListPadding.POWER_OF_TWO
+                );
+            });
+            assertEquals(3, salaries.size());
+            String paddedSql = slowQueryLog.drain().getFirst().sql().getFirst();
+            assertEquals(4, inListParameterCount(paddedSql));
+
+            //Sizes within one power-of-two bucket share the SQL
+            salaries = doInTx(em -> {
+                return new SalaryDao(em, generalDao).findByDates(
+                        emp1.getId(),
+                        List.of(salary1_1.getDate(), salary1_2.getDate(), salary1_3.getDate(), parse("2023-02-04")),
+                        InListPadding.POWER_OF_TWO
+                );
+            });
+            assertEquals(3, salaries.size());
+            assertEquals(paddedSql, slowQueryLog.drain().getFirst().sql().getFirst());
+
+            salaries = doInTx(em -> {
+                return new SalaryDao(em, generalDao).findByDates(
+                        emp1.getId(),
+                        List.of(salary1_1.getDate(), salary1_3.getDate(), parse("2023-02-04"), parse("2023-02-05"), parse("2023-02-06")),
+                        InListPadding.POWER_OF_TWO
+                );
+            });
+            assertEquals(2, salaries.size());
+            assertEquals(8, inListParameterCount(slowQueryLog.drain().getFirst().sql().getFirst()));
+
+            salaries = doInTx(em -> {
+                return new SalaryDao(em, generalDao).findByDates(
+                        emp1.getId(),
+                        List.of(salary1_1.getDate(), salary1_2.getDate(), salary1_3.getDate()),
+                        InListPadding.NONE
+                );
+            });
+            assertEquals(3, salaries.size());
+            assertEquals(3, inListParameterCount(slowQueryLog.drain().getFirst().sql().getFirst()));
+        }
+        {
+            List<Salary> salaries = doInTx(em -> {
+                return new SalaryDao(em).findByDates(emp1.getId(), emptyList(), InListPadding.POWER_OF_TWO);
+            });
+            assertEquals(0, salaries.size());
+        }
+    }
+
+    private static int inListParameterCount(String sql) {
+        int inListStart = sql.indexOf(" in (");
+        assertTrue(inListStart >= 0, sql);
+        String inList = sql.substring(inListStart, sql.indexOf(')', inListStart));
+        return (int) inList.chars().filter(c -> c == '?').count();
+    }
+
+    @Test
+    void findByIds_resolvesManagedEntities() {
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em);
+            Salary managedSalary = salaryDao.getById(salary1_1.getId());
+
+            List<Salary> salaries = salaryDao.findByIds(List.of(salary1_1.getId(), salary2_1.getId(), -1L));
+            assertEquals(2, salaries.size());
+            Salary reloadedSalary = salaries.stream()
+                    .filter(s -> s.getId().equals(salary1_1.getId()))
+                    .findFirst()
+                    .orElseThrow();
+            assertSame(managedSalary, reloadedSalary);
+        });
+        {
+            List<Salary> salaries = doInTx(em -> {
+                return new SalaryDao(em).findByIds(emptyList());
+            });
+            assertEquals(0, salaries.size());
+        }
+    }
+
+    @Test
+    void findByIdsAsMap() {
+        List<Long> requestedIds = List.of(salary2_3.getId(), -1L, salary1_1.getId(), salary1_2.getId());
+        {
+            Map<Long, Salary> salaries = doInTx(em -> {
+                return new SalaryDao(em).findByIdsAsMap(requestedIds);
+            });
+            assertEquals(3, salaries.size());
+            assertEquals(0, salary2_3.getAmount().compareTo(salaries.get(salary2_3.getId()).getAmount()));
+            assertEquals(0, salary1_1.getAmount().compareTo(salaries.get(salary1_1.getId()).getAmount()));
+            assertNull(salaries.get(-1L));
+        }
+        {
+            Map<Long, Salary> salaries = doInTx(em -> {
+                return new SalaryDao(em).findByIdsAsMap(requestedIds, ResultOrderMode.AS_REQUESTED);
+            });
+            assertEquals(List.of(salary2_3.getId(), salary1_1.getId(), salary1_2.getId()), List.copyOf(salaries.keySet()));
+        }
+        {
+            List<Salary> salaries = doInTx(em -> {
+                return new SalaryDao(em).findByIdsInRequestedOrder(requestedIds);
+            });
+            assertEquals(4, salaries.size());
+            assertEquals(salary2_3.getId(), salaries.get(0).getId());
+            assertNull(salaries.get(1));
+            assertEquals(salary1_1.getId(), salaries.get(2).getId());
+            assertEquals(salary1_2.getId(), salaries.get(3).getId());
+        }
+    }
+
+    @Test
+    void findByIdsInChunks() {
+        List<Long> salaryIds = List.of(
+                salary1_1.getId(), salary1_2.getId(), salary1_3.getId(),
+                salary2_1.getId(), salary2_2.getId(), salary2_3.getId()
+        );
+        {
+            List<Salary> salaries = doInTx(em -> {
+                return new SalaryDao(em).findByIdsInChunks(salaryIds, 4);
+            });
+            assertEquals(6, salaries.size());
+            assertEquals(Set.copyOf(salaryIds), salaries.stream().map(Salary::getId).collect(toSet()));
+        }
+        {
+            List<Salary> salaries = doInTx(em -> {
+                return new SalaryDao(em).findByIdsInChunks(List.of(salary1_1.getId(), salary1_1.getId(), -1L), 1);
+            });
+            assertEquals(1, salaries.size());
+            assertEquals(salary1_1.getId(), salaries.getFirst().getId());
+        }
+        {
+            List<Salary> salaries = doInTx(em -> {
+                return new SalaryDao(em).findByIdsInChunks(emptyList(), 10);
+            });
+            assertEquals(0, salaries.size());
+        }
+    }
+
+    @Test
+    void bulkUpdateByIdsInChunks() {
+        LocalDateTime validTo = parse("2030-01-01").atStartOfDay();
+        long updated = doInTx(em -> {
+            return new EmployeeDao(em).bulkUpdateByIds(
+                    List.of(emp1.getId(), emp2.getId(), -1L),
+                    Map.of(Employee_.validTo, validTo),
+                    1,
+                    null,
+                    ChunkCompletionMode.NONE
+            );
+        });
+        assertEquals(2, updated);
+        for (Employee emp : List.of(emp1, emp2)) {
+            Employee e = doInTx(em -> {
+                return new EmployeeDao(em).getById(emp.getId());
+            });
+            assertEquals(validTo, e.getValidTo());
+            assertEquals(emp.getVersion() + 1, e.getVersion());
+        }
+        assertThrows(IllegalArgumentException.class, () -> doInTx(em -> {
+            return new EmployeeDao(em).bulkUpdateByIds(
+                    List.of(emp1.getId()), Map.of(Employee_.version, (short) 5), 1, null, null);
+        }));
+    }
+
+    @Test
+    void readOnlyQueryMode() {
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em);
+            List<Salary> salaries = salaryDao.findByEmployeeIdReadOnly(emp1.getId());
+            assertEquals(3, salaries.size());
+            Session session = em.unwrap(Session.class);
+            for (Salary salary : salaries) {
+                assertTrue(session.isReadOnly(salary));
+                salary.setAmount(BigDecimal.ONE);
+            }
+            em.flush();
+
+            em.clear();
+            List<Salary> readOnlyById = salaryDao.findByIds(List.of(salary2_1.getId()), QueryReadMode.READ_ONLY);
+            assertTrue(session.isReadOnly(readOnlyById.getFirst()));
+            Map<Long, Salary> readOnlyByIdMap = salaryDao.findByIdsAsMap(
+                    List.of(salary2_2.getId()), ResultOrderMode.UNORDERED, QueryReadMode.READ_ONLY);
+            assertTrue(session.isReadOnly(readOnlyByIdMap.get(salary2_2.getId())));
+            List<Salary> readOnlyInRequestedOrder = salaryDao.findByIdsInRequestedOrder(List.of(salary2_3.getId()), QueryReadMode.READ_ONLY);
+            assertTrue(session.isReadOnly(readOnlyInRequestedOrder.getFirst()));
+        });
+        //Loading by ids respects the default read-only setting of the session
+        doInTx(em -> {
+            Session session = em.unwrap(Session.class);
+            session.setDefaultReadOnly(true);
+            SalaryDao salaryDao = new SalaryDao(em);
+            assertTrue(session.isReadOnly(salaryDao.findByIds(List.of(salary1_1.getId())).getFirst()));
+            assertTrue(session.isReadOnly(salaryDao.findByIdsAsMap(List.of(salary1_2.getId())).get(salary1_2.getId())));
+            assertTrue(session.isReadOnly(salaryDao.findByIdsInRequestedOrder(List.of(salary1_3.getId())).getFirst()));
+
+            session.setDefaultReadOnly(false);
+            assertFalse(session.isReadOnly(salaryDao.findByIds(List.of(salary2_1.getId())).getFirst()));
+        });
+        List<Salary> salaries = doInTx(em -> {
+            return new SalaryDao(em).findByEmployeeId(emp1.getId(), false);
+        });
+        assertTrue(salaries.stream().noneMatch(s -> BigDecimal.ONE.compareTo(s.getAmount()) == 0));
+    }
+
+    @Test
+    void databaseCapabilities() {
+        DatabaseCapabilities capabilities = doInTx(em -> {
+            DatabaseCapabilities c = GeneralDao.INSTANCE.getDatabaseCapabilities(em);
+            assertSame(c, GeneralDao.INSTANCE.getDatabaseCapabilities(em));
+            return c;
+        });
+        assertEquals(Database.POSTGRESQL, capabilities.database());
+        assertTrue(capabilities.version().isSameOrAfter(12));
+        assertEquals(65_535, capabilities.maxBindParameters());
+        assertTrue(capabilities.supportsArrayBinding());
+        assertTrue(capabilities.supportsSkipLocked());
+        assertTrue(capabilities.supportsUpsert());
+
+        //Factories of the same persistence unit are resolved independently
+        try (EntityManagerFactory otherEmf = Persistence.createEntityManagerFactory("brinvex-persistence-test");
+             EntityManager otherEm = otherEmf.createEntityManager()) {
+            DatabaseCapabilities otherCapabilities = GeneralDao.INSTANCE.getDatabaseCapabilities(otherEm);
+            assertNotSame(capabilities, otherCapabilities);
+            assertEquals(capabilities, otherCapabilities);
+        }
+    }
+
+    @Test
+    void entityMetadata() {
+        doInTx(em -> {
+            EntityMetadata<Employee> employeeMetadata = GeneralDao.INSTANCE.getEntityMetadata(em, Employee.class);
+            assertSame(employeeMetadata, GeneralDao.INSTANCE.getEntityMetadata(em, Employee.class));
+            assertEquals(Employee_.id, employeeMetadata.idAttribute());
+            assertEquals(Employee_.id, employeeMetadata.idAttribute(Long.class));
+            assertEquals(Employee_.version, employeeMetadata.versionAttribute());
+            assertTrue("Employee".equalsIgnoreCase(employeeMetadata.tableName()));
+            assertEquals(List.of("id"), employeeMetadata.idColumnNames());
+            assertEquals("id", employeeMetadata.columnNames().getFirst());
+            assertEquals(6, employeeMetadata.columnNames().size());
+            assertEquals(emptyList(), employeeMetadata.naturalIdAttributes());
+            assertThrows(IllegalArgumentException.class, () -> employeeMetadata.idAttribute(Integer.class));
+
+            EntityMetadata<Salary> salaryMetadata = GeneralDao.INSTANCE.getEntityMetadata(em, Salary.class);
+            assertFalse(salaryMetadata.isVersioned());
+            assertTrue(salaryMetadata.columnNames().contains("employee_id"));
+
+            assertThrows(IllegalArgumentException.class, () -> GeneralDao.INSTANCE.getEntityMetadata(em, String.class));
+        });
+    }
+
+    @Test
+    void generalDaoInterceptors() {
+        assertSame(GeneralDao.INSTANCE, GeneralDao.withInterceptors(GeneralDao.INSTANCE, List.of()));
+
+        List<String> events = new ArrayList<>();
+        GeneralDaoInterceptor outer = invocation -> {
+            events.add("outer:" + invocation.operation());
+            Object result = invocation.proceed();
+            Class<?> entityType = invocation.entityType();
+            events.add(format("outer:%s:%s:%s:%s", invocation.operation(), entityType.getSimpleName(),
+                    invocation.query() != null, invocation.resultSize(result)));
+            return result;
+        };
+        GeneralDaoInterceptor inner = invocation -> {
+            events.add("inner:" + invocation.operation());
+            return invocation.proceed();
+        };
+        GeneralDao generalDao = GeneralDao.withInterceptors(GeneralDao.INSTANCE, List.of(outer, inner));
+
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em, generalDao);
+            salaryDao.findByIds(List.of(salary1_1.getId(), salary1_2.getId()));
+            salaryDao.findByNumberFilter(emp1.getId(), Filter.biggerThan(new BigDecimal("150")));
+            salaryDao.bulkDeleteByIds(List.of(salary2_1.getId(), salary2_2.getId(), salary2_3.getId()));
+        });
+        assertEquals(List.of(
+                "outer:findByIds", "inner:findByIds", "outer:findByIds:Salary:false:2",
+                "outer:find", "inner:find", "outer:find:Salary:true:2",
+                "outer:bulkDeleteByIds", "inner:bulkDeleteByIds", "outer:bulkDeleteByIds:Salary:false:3"
+        ), events);
+
+        GeneralDao rejecting = GeneralDao.withInterceptors(GeneralDao.INSTANCE, List.of(invocation -> {
+            if (invocation.operation().startsWith("bulk")) {
+                throw new IllegalStateException("Bulk operations are not allowed");
+            }
+            return invocation.proceed();
+        }));
+        assertThrows(IllegalStateException.class, () -> doInTx(em -> {
+            new SalaryDao(em, rejecting).bulkDeleteByIds(List.of(salary1_1.getId()), 10, null, null);
+        }));
+
+        List<String> retryEvents = new ArrayList<>();
+        GeneralDaoInterceptor retrying = invocation -> {
+            invocation.proceed();
+            return invocation.proceed();
+        };
+        GeneralDaoInterceptor counting = invocation -> {
+            retryEvents.add(invocation.operation());
+            return invocation.proceed();
+        };
+        GeneralDao retryingDao = GeneralDao.withInterceptors(GeneralDao.INSTANCE, List.of(retrying, counting));
+        doInTx(em -> {
+            new SalaryDao(em, retryingDao).findByIds(List.of(salary1_1.getId()));
+        });
+        assertEquals(List.of("findByIds", "findByIds"), retryEvents);
+    }
+
+    @Test
+    void jfrEvents() throws IOException {
+        Path recordingFile = Files.createTempFile("generalDaoEvents", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.brinvex.persistence.GeneralDao");
+            recording.start();
+            doInTx(em -> {
+                SalaryDao salaryDao = new SalaryDao(em);
+                salaryDao.findByNumberFilter(emp1.getId(), Filter.biggerThan(new BigDecimal("150")));
+                salaryDao.findForUpdate(emp1.getId(), salary1_1.getDate(), Duration.ofSeconds(2));
+                salaryDao.findByIds(List.of(salary2_1.getId(), salary2_2.getId()));
+            });
+            try (StatelessSession session = emf.unwrap(SessionFactory.class).openStatelessSession()) {
+                new SalaryStatelessDao(session).getById(salary1_1.getId());
+            }
+            recording.stop();
+            recording.dump(recordingFile);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+            assertEquals(4, events.size());
+
+            RecordedEvent findEvent = events.getFirst();
+            assertEquals("find", findEvent.getString("operation"));
+            assertEquals(Salary.class.getName(), findEvent.getClass("entityType").getName());
+            assertEquals(2, findEvent.getLong("rowCount"));
+            assertNull(findEvent.getString("failure"));
+
+            RecordedEvent lockEvent = events.get(1);
+            assertEquals("findFirstForUpdate", lockEvent.getString("operation"));
+            assertEquals(1, lockEvent.getLong("rowCount"));
+            assertEquals(Duration.ofSeconds(2), lockEvent.getDuration("lockTimeout"));
+            assertTrue(lockEvent.getDuration().compareTo(Duration.ZERO) > 0);
+
+            RecordedEvent findByIdsEvent = events.get(2);
+            assertEquals("findByIds", findByIdsEvent.getString("operation"));
+            assertEquals(Salary.class.getName(), findByIdsEvent.getClass("entityType").getName());
+            assertEquals(2, findByIdsEvent.getLong("rowCount"));
+
+            RecordedEvent statelessGetByIdEvent = events.get(3);
+            assertEquals("getById", statelessGetByIdEvent.getString("operation"));
+            assertEquals(Salary.class.getName(), statelessGetByIdEvent.getClass("entityType").getName());
+            assertEquals(1, statelessGetByIdEvent.getLong("rowCount"));
+        } finally {
+            Files.deleteIfExists(recordingFile);
+        }
+    }
+
+    @Test
+    void slowQueryLog() {
+        SlowQueryLogConfig config = new SlowQueryLogConfig(Duration.ZERO, 2, BindValueMasking.MASK_TEXT, null);
+        try (SlowQueryLog slowQueryLog = SlowQueryLog.create(config)) {
+            GeneralDao generalDao = GeneralDao.withInterceptors(GeneralDao.INSTANCE, List.of(slowQueryLog));
+            doInTx(em -> {
+                SalaryDao salaryDao = new SalaryDao(em, generalDao);
+                salaryDao.findByNumberFilter(emp1.getId(), Filter.biggerThan(new BigDecimal("150")));
+            });
+            List<SlowQueryRecord> records = slowQueryLog.drain();
+            assertEquals(1, records.size());
+            SlowQueryRecord record = records.getFirst();
+            assertEquals(SalaryDao.class.getName(), record.callerClass());
+            assertEquals("findByNumberFilter", record.callerMethod());
+            assertEquals("find", record.operation());
+            assertEquals(Salary.class, record.entityType());
+            assertEquals(2, record.rowCount());
+            assertEquals(1, record.sql().size());
+            assertTrue(record.sql().getFirst().toLowerCase().startsWith("select"));
+            assertTrue(record.bindValues().contains("150"));
+            assertTrue(record.bindValues().contains(String.valueOf(emp1.getId())));
+            assertNull(record.failure());
+            assertEquals(emptyList(), slowQueryLog.drain());
+
+            doInTx(em -> {
+                SalaryDao salaryDao = new SalaryDao(em, generalDao);
+                for (int i = 0; i < 3; i++) {
+                    salaryDao.findByEmployeeId(emp2.getId(), false);
+                }
+            });
+            records = slowQueryLog.drain();
+            assertEquals(2, records.size());
+            assertEquals(List.of("employeeId=" + emp2.getId()), records.getFirst().bindValues());
+            assertEquals(1, slowQueryLog.droppedCount());
+        }
+
+        SlowQueryLogConfig maskingConfig = new SlowQueryLogConfig(Duration.ZERO, 10, BindValueMasking.MASK_ALL, null);
+        try (SlowQueryLog slowQueryLog = SlowQueryLog.create(maskingConfig)) {
+            GeneralDao generalDao = GeneralDao.withInterceptors(GeneralDao.INSTANCE, List.of(slowQueryLog));
+            doInTx(em -> {
+                new SalaryDao(em, generalDao).findByEmployeeId(emp2.getId(), false);
+            });
+            assertEquals(List.of("employeeId=***(Long)"), slowQueryLog.drain().getFirst().bindValues());
+
+            //The DAO called through an outer proxy, e.g. a transactional one
+            doInTx(em -> {
+                SalaryDao salaryDao = new SalaryDao(em, generalDao);
+                Runnable proxiedCall = (Runnable) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[]{Runnable.class}, (_, _, _) -> salaryDao.findByEmployeeId(emp2.getId(), false));
+                proxiedCall.run();
+            });
+            SlowQueryRecord record = slowQueryLog.drain().getFirst();
+            assertEquals(SalaryDao.class.getName(), record.callerClass());
+            assertEquals("findByEmployeeId", record.callerMethod());
+        }
+
+        try (SlowQueryLog slowQueryLog = SlowQueryLog.create(SlowQueryLogConfig.of(Duration.ofHours(1)))) {
+            GeneralDao generalDao = GeneralDao.withInterceptors(GeneralDao.INSTANCE, List.of(slowQueryLog));
+            doInTx(em -> {
+                new SalaryDao(em, generalDao).findByEmployeeId(emp2.getId(), false);
+            });
+            assertEquals(emptyList(), slowQueryLog.drain());
+        }
+    }
+
+    @Test
+    void statementBudget() {
+        StatementTracker tracker = doInTx(em -> {
+            StatementTracker statementTracker = GeneralDao.INSTANCE.trackStatements(em, StatementBudget.of(10, 1, StatementBudgetMode.FAIL));
+            assertThrows(IllegalStateException.class, () -> GeneralDao.INSTANCE.trackStatements(em, statementTracker.budget()));
+            List<Salary> salaries = new SalaryDao(em).findByEmployeeId(emp1.getId(), false);
+            salaries.forEach(salary -> assertEquals("Alice", salary.getEmployee().getName()));
+            return statementTracker;
+        });
+        StatementStats stats = tracker.stats();
+        assertEquals(2, stats.statementCount());
+        assertEquals(4, stats.entityLoadCount());
+        assertEquals(0, stats.collectionLoadCount());
+        assertEquals(1, stats.mostRepeatedStatementCount());
+
+        //Lazy associations initialized in a loop
+        assertThrows(PersistenceException.class, () -> doInTx(em -> {
+            GeneralDao.INSTANCE.trackStatements(em, StatementBudget.of(10, 1, StatementBudgetMode.FAIL));
+            List<Salary> salaries = new SalaryDao(em).findByIds(List.of(salary1_1.getId(), salary2_1.getId()));
+            salaries.forEach(salary -> salary.getEmployee().getName());
+        }));
+
+        StatementTracker warningTracker = doInTx(em -> {
+            StatementTracker statementTracker = GeneralDao.INSTANCE.trackStatements(em, StatementBudget.of(1, 1, StatementBudgetMode.WARN));
+            List<Salary> salaries = new SalaryDao(em).findByIds(List.of(salary1_1.getId(), salary2_1.getId()));
+            salaries.forEach(salary -> salary.getEmployee().getName());
+            return statementTracker;
+        });
+        assertEquals(3, warningTracker.stats().statementCount());
+        assertEquals(2, warningTracker.stats().mostRepeatedStatementCount());
+        assertTrue(warningTracker.stats().mostRepeatedStatement().toLowerCase().contains("employee"));
+
+        assertThrows(TransactionRequiredException.class, () -> {
+            try (EntityManager em = emf.createEntityManager()) {
+                GeneralDao.INSTANCE.trackStatements(em, StatementBudget.of(10, 1, StatementBudgetMode.WARN));
+            }
+        });
+    }
+
+    @Test
+    void statelessDao() {
+        Salary salary = new Salary();
+        salary.setEmployee(emp2);
+        salary.setDate(parse("2023-05-01"));
+        salary.setAmount(new BigDecimal("300"));
+        try (StatelessSession session = emf.unwrap(SessionFactory.class).openStatelessSession()) {
+            SalaryStatelessDao salaryDao = new SalaryStatelessDao(session);
+            session.inTransaction(_ -> salaryDao.insert(salary));
+            assertNotNull(salary.getId());
+
+            Salary loaded = salaryDao.getById(salary.getId());
+            assertNotSame(salary, loaded);
+            assertNotSame(loaded, salaryDao.getById(salary.getId()));
+            assertEquals("Bob", salaryDao.fetchEmployee(loaded).getName());
+
+            loaded.setAmount(new BigDecimal("301"));
+            session.inTransaction(_ -> salaryDao.update(loaded));
+
+            List<Salary> salaries = salaryDao.findByEmployeeId(emp2.getId());
+            assertEquals(4, salaries.size());
+            assertEquals(0, new BigDecimal("301").compareTo(salaries.getLast().getAmount()));
+            assertEquals(
+                    List.of(salary2_1.getId(), salary.getId()),
+                    salaryDao.findByIds(List.of(salary2_1.getId(), -1L, salary.getId())).stream().map(Salary::getId).toList()
+            );
+            assertEquals(7, salaryDao.findByIds(null).size());
+
+            session.inTransaction(_ -> salaryDao.delete(loaded));
+            assertNull(salaryDao.getById(salary.getId()));
+        }
+    }
+
+    @Test
+    void bulkDeleteByIdsInChunks() {
+        {
+            long deleted = doInTx(em -> {
+                Salary loadedSalary = em.find(Salary.class, salary1_1.getId());
+                long deletedRows = new SalaryDao(em).bulkDeleteByIds(
+                        List.of(salary1_1.getId(), salary1_2.getId(), salary1_3.getId(), -1L),
+                        2,
+                        Duration.ofMillis(10),
+                        ChunkCompletionMode.FLUSH_AND_CLEAR
+                );
+                assertFalse(em.contains(loadedSalary));
+                return deletedRows;
+            });
+            assertEquals(3, deleted);
+            List<Salary> salaries = doInTx(em -> {
+                return new SalaryDao(em).findByEmployeeId(emp1.getId(), false);
+            });
+            assertEquals(0, salaries.size());
+        }
+        {
+            long deleted = doInTx(em -> {
+                Employee loadedEmployee = em.find(Employee.class, emp2.getId());
+                long deletedRows = new SalaryDao(em).bulkDeleteByIds(
+                        List.of(salary2_1.getId(), salary2_2.getId(), salary2_3.getId()),
+                        1,
+                        null,
+                        ChunkCompletionMode.COMMIT
+                );
+                assertTrue(em.contains(loadedEmployee));
+                return deletedRows;
+            });
+            assertEquals(3, deleted);
+            List<Salary> salaries = doInTx(em -> {
+                return new SalaryDao(em).findByEmployeeId(emp2.getId(), false);
+            });
+            assertEquals(0, salaries.size());
+        }
+    }
+
     @Test
     void datePartsExtract() {
         {
@@ -436,6 +1236,42 @@ public class EntityDaoTest extends AbstractTest {
         }
     }
 
+    @Test
+    void lockTimeoutIsSetOnlyWhenChanged() {
+        try (SlowQueryLog statementLog = SlowQueryLog.create(
+                new SlowQueryLogConfig(Duration.ZERO, 1024, BindValueMasking.MASK_ALL, null))) {
+            GeneralDao generalDao = GeneralDao.withInterceptors(GeneralDao.INSTANCE, List.of(statementLog));
+            doInTx(em -> {
+                SalaryDao salaryDao = new SalaryDao(em, generalDao);
+                for (int i = 0; i < 1000; i++) {
+                    assertNotNull(salaryDao.getByIdForUpdate(salary1_1.getId(), Duration.ofSeconds(2)));
+                    em.clear();
+                }
+                //The reset is deferred till the next statement which does not acquire a lock
+                assertEquals("0", em.createNativeQuery("show lock_timeout").getSingleResult());
+            });
+            List<SlowQueryRecord> records = statementLog.drain();
+            assertEquals(1000, records.size());
+            assertEquals(1, records
+                    .stream()
+                    .flatMap(r -> r.sql().stream())
+                    .filter(sql -> sql.contains("lock_timeout"))
+                    .count());
+        }
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em);
+            assertNotNull(salaryDao.getByIdForUpdate(salary1_1.getId(), Duration.ofSeconds(2)));
+            assertNotNull(salaryDao.findForUpdate(emp1.getId(), salary1_2.getDate(), Duration.ofSeconds(2)));
+            assertEquals("0", em.createNativeQuery("show lock_timeout").getSingleResult());
+
+            GeneralDao.INSTANCE.setTransactionScopedLockTimeout(em, Duration.ofSeconds(3));
+            assertEquals("3s", em.createNativeQuery("show lock_timeout").getSingleResult());
+        });
+        doInTx(em -> {
+            assertEquals("0", em.createNativeQuery("show lock_timeout").getSingleResult());
+        });
+    }
+
     @Test
     void getForUpdate() throws InterruptedException, ExecutionException {
 
@@ -649,6 +1485,29 @@ public class EntityDaoTest extends AbstractTest {
         }
     }
 
+    @Test
+    void claimBatchForUpdateSkipLocked() throws InterruptedException, ExecutionException {
+        Callable<List<Long>> c1 = () -> doInTx(em -> {
+            List<Salary> claimed = new SalaryDao(em).findForUpdateSkipLocked(4);
+            sleep(3);
+            return claimed.stream().map(Salary::getId).toList();
+        });
+
+        Callable<List<Long>> c2 = () -> doInTx(em -> {
+            sleep(1);
+            List<Salary> claimed = new SalaryDao(em).findForUpdateSkipLocked(4);
+            return claimed.stream().map(Salary::getId).toList();
+        });
+
+        try (ExecutorService executorService = Executors.newFixedThreadPool(2)) {
+            List<Future<List<Long>>> futures = executorService.invokeAll(List.of(c1, c2));
+            List<Long> claimed1 = futures.get(0).get();
+            List<Long> claimed2 = futures.get(1).get();
+            assertEquals(List.of(salary1_1.getId(), salary1_2.getId(), salary1_3.getId(), salary2_1.getId()), claimed1);
+            assertEquals(List.of(salary2_2.getId(), salary2_3.getId()), claimed2);
+        }
+    }
+
     @Test
     void transactionRequired_forSkipLocked_query() {
         assertThrows(TransactionRequiredException.class, () -> {
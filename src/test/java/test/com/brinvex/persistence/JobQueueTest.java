@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package test.com.brinvex.persistence;
+
+import com.brinvex.persistence.api.JobConsumer;
+import com.brinvex.persistence.api.JobQueue;
+import com.brinvex.persistence.api.JobQueueConfig;
+import com.brinvex.persistence.api.JobStatus;
+import org.junit.jupiter.api.Test;
+import test.com.brinvex.persistence.dm.MailJob;
+import test.com.brinvex.persistence.infra.AbstractTest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JobQueueTest extends AbstractTest {
+
+    private static MailJob mailJob(String recipient) {
+        MailJob job = new MailJob();
+        job.setRecipient(recipient);
+        return job;
+    }
+
+    private static List<MailJob> mailJobs(String prefix, int count) {
+        List<MailJob> jobs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            jobs.add(mailJob(prefix + i + "@x.com"));
+        }
+        return jobs;
+    }
+
+    @Test
+    void claimAckNack() {
+        JobQueue<MailJob> queue = JobQueue.of(MailJob.class, new JobQueueConfig(
+                "mail_jobs", 10, 2, Duration.ZERO, Duration.ofMinutes(1), Duration.ofSeconds(1)));
+        doInTx(em -> {
+            queue.enqueueAll(em, List.of(mailJob("a@x.com"), mailJob("b@x.com"), mailJob("c@x.com")));
+        });
+
+        List<MailJob> claimed = doInTx(em -> {
+            return queue.claim(em, 2);
+        });
+        assertEquals(2, claimed.size());
+        assertTrue(claimed.stream().allMatch(j -> j.getStatus() == JobStatus.PROCESSING && j.getAttemptCount() == 1));
+
+        boolean acked = doInTx(em -> {
+            return queue.ack(em, claimed.get(0));
+        });
+        assertTrue(acked);
+        boolean ackedAgain = doInTx(em -> {
+            return queue.ack(em, claimed.get(0));
+        });
+        assertFalse(ackedAgain);
+        boolean nacked = doInTx(em -> {
+            return queue.nack(em, claimed.get(1), "SMTP unavailable");
+        });
+        assertTrue(nacked);
+
+        List<MailJob> reclaimed = doInTx(em -> {
+            return queue.claim(em, 10);
+        });
+        assertEquals(2, reclaimed.size());
+        MailJob retried = reclaimed.stream().filter(j -> j.getId().equals(claimed.get(1).getId())).findFirst().orElseThrow();
+        assertEquals(2, retried.getAttemptCount());
+        assertEquals("SMTP unavailable", retried.getLastError());
+
+        //The job has no attempts left
+        boolean nackedAgain = doInTx(em -> {
+            return queue.nack(em, retried, "SMTP unavailable again");
+        });
+        assertTrue(nackedAgain);
+        MailJob failed = doInTx(em -> {
+            return em.find(MailJob.class, retried.getId());
+        });
+        assertEquals(JobStatus.FAILED, failed.getStatus());
+        assertNull(failed.getLeaseExpiresAt());
+        //Neither the failed job nor the one still leased by the second claim is claimed
+        assertEquals(0, doInTx(em -> {
+            return queue.claim(em, 10);
+        }).size());
+    }
+
+    @Test
+    void expiredLeaseOfLastAttemptFailsJob() {
+        JobQueue<MailJob> queue = JobQueue.of(MailJob.class, new JobQueueConfig(
+                "mail_jobs", 10, 1, Duration.ZERO, Duration.ofMillis(1), Duration.ofSeconds(1)));
+        doInTx(em -> {
+            queue.enqueueAll(em, List.of(mailJob("a@x.com"), mailJob("b@x.com")));
+        });
+        List<MailJob> claimed = doInTx(em -> {
+            return queue.claim(em, 1);
+        });
+        assertEquals(1, claimed.size());
+        sleep(0.05);
+
+        //The consumer died without a nack, its job has no attempts left
+        List<MailJob> reclaimed = doInTx(em -> {
+            return queue.claim(em, 10);
+        });
+        assertEquals(1, reclaimed.size());
+        assertNotEquals(claimed.getFirst().getId(), reclaimed.getFirst().getId());
+        MailJob failed = doInTx(em -> {
+            return em.find(MailJob.class, claimed.getFirst().getId());
+        });
+        assertEquals(JobStatus.FAILED, failed.getStatus());
+        assertNull(failed.getLeaseExpiresAt());
+        assertNotNull(failed.getLastError());
+    }
+
+    @Test
+    void consumerIsWokenUpByNotification() throws InterruptedException {
+        //The poll interval is longer than the test, the consumer must be woken up by NOTIFY
+        JobQueue<MailJob> queue = JobQueue.of(MailJob.class, new JobQueueConfig(
+                "mail_jobs", 3, 3, Duration.ZERO, Duration.ofMinutes(1), Duration.ofMinutes(5)));
+        int jobCount = 10;
+        CountDownLatch initialProcessed = new CountDownLatch(jobCount);
+        CountDownLatch notifiedProcessed = new CountDownLatch(jobCount);
+        Set<String> recipients = ConcurrentHashMap.newKeySet();
+
+        //The initial jobs are found by the first claim, which happens only after LISTEN has been issued
+        doInTx(em -> {
+            queue.enqueueAll(em, mailJobs("initial", jobCount));
+        });
+        try (JobConsumer _ = queue.startConsumer(emf, (em, job) -> {
+            assertTrue(em.contains(job));
+            recipients.add(job.getRecipient());
+            (job.getRecipient().startsWith("initial") ? initialProcessed : notifiedProcessed).countDown();
+        }, 4)) {
+            assertTrue(initialProcessed.await(10, TimeUnit.SECONDS));
+            doInTx(em -> {
+                queue.enqueueAll(em, mailJobs("notified", jobCount));
+            });
+            assertTrue(notifiedProcessed.await(10, TimeUnit.SECONDS));
+        }
+        assertEquals(2 * jobCount, recipients.size());
+        long remaining = doInTx(em -> {
+            return em.createQuery("select count(j) from MailJob j", Long.class).getSingleResult();
+        });
+        assertEquals(0, remaining);
+    }
+}
@@ -17,6 +17,13 @@ package test.com.brinvex.persistence.dao;
 
 import com.brinvex.persistence.api.AbstractEntityDao;
 import com.brinvex.persistence.api.Filter;
+import com.brinvex.persistence.api.GeneralDao;
+import com.brinvex.persistence.api.InListPadding;
+import com.brinvex.persistence.api.KeysetPage;
+import com.brinvex.persistence.api.PageWithTotal;
+import com.brinvex.persistence.api.QueryReadMode;
+import com.brinvex.persistence.api.QueryTemplate;
+import com.brinvex.persistence.api.Slice;
 import test.com.brinvex.persistence.dm.Employee;
 import test.com.brinvex.persistence.dm.Employee_;
 import test.com.brinvex.persistence.dm.Salary;
@@ -25,12 +32,15 @@ import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.Root;
+import org.hibernate.query.Order;
 import test.com.brinvex.persistence.dm.Salary_;
 
 import java.time.Duration;
 import java.time.LocalDate;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public class SalaryDao extends AbstractEntityDao<Salary, Long> {
 
@@ -41,23 +51,42 @@ public class SalaryDao extends AbstractEntityDao<Salary, Long> {
         this.em = em;
     }
 
+    public SalaryDao(EntityManager em, GeneralDao generalDao) {
+        super(Salary.class, Long.class, generalDao);
+        this.em = em;
+    }
+
     @Override
     protected EntityManager entityManager() {
         return em;
     }
 
+    private static final QueryTemplate<Salary> FIND_BY_EMPLOYEE_ID = QueryTemplate.of("SalaryDao.findByEmployeeId", cb -> {
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        Join<Salary, Employee> employeeJoin = r.join(Salary_.employee);
+        q.where(cb.equal(employeeJoin.get(Employee_.id), cb.parameter(Long.class, "employeeId")));
+        return q;
+    });
+
+    private static final QueryTemplate<Salary> FIND_BY_EMPLOYEE_ID_FETCH_EMPLOYEE = QueryTemplate.of("SalaryDao.findByEmployeeIdFetchEmployee", cb -> {
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        Join<Salary, Employee> employeeJoin = GeneralDao.INSTANCE.fetchJoin(r, Salary_.employee);
+        q.where(cb.equal(employeeJoin.get(Employee_.id), cb.parameter(Long.class, "employeeId")));
+        return q;
+    });
+
     public List<Salary> findByEmployeeId(long employeeId, boolean fetchEmployee) {
+        return find(fetchEmployee ? FIND_BY_EMPLOYEE_ID_FETCH_EMPLOYEE : FIND_BY_EMPLOYEE_ID, Map.of("employeeId", employeeId));
+    }
+
+    public List<Salary> findByEmployeeIdReadOnly(long employeeId) {
         CriteriaBuilder cb = this.cb();
         CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
         Root<Salary> r = q.from(Salary.class);
-        Join<Salary, Employee> employeeJoin;
-        if (fetchEmployee) {
-            employeeJoin = fetchJoin(r, Salary_.employee);
-        } else {
-            employeeJoin = r.join(Salary_.employee);
-        }
-        q.where(cb.equal(employeeJoin.get(Employee_.id), employeeId));
-        return find(q);
+        q.where(cb.equal(r.get(Salary_.employee).get(Employee_.id), employeeId));
+        return find(q, QueryReadMode.READ_ONLY);
     }
 
     public List<Salary> findByNumberFilter(long employeeId, Filter salaryFilter) {
@@ -73,13 +102,17 @@ public class SalaryDao extends AbstractEntityDao<Salary, Long> {
     }
 
     public List<Salary> findByDates(long employeeId, Collection<LocalDate> dateFilter) {
+        return findByDates(employeeId, dateFilter, InListPadding.NONE);
+    }
+
+    public List<Salary> findByDates(long employeeId, Collection<LocalDate> dateFilter, InListPadding inListPadding) {
         CriteriaBuilder cb = this.cb();
         CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
         Root<Salary> r = q.from(Salary.class);
         Join<Salary, Employee> employeeJoin = fetchJoin(r, Salary_.employee);
         q.where(
                 cb.equal(employeeJoin.get(Employee_.id), employeeId),
-                inCollection(r.get(Salary_.date), dateFilter)
+                inCollection(r.get(Salary_.date), dateFilter, inListPadding)
         );
         return find(q);
     }
@@ -120,6 +153,54 @@ public class SalaryDao extends AbstractEntityDao<Salary, Long> {
         return findFirstForUpdateSkipLocked(q);
     }
 
+    public List<Salary> findForUpdateSkipLocked(int limit) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        q.orderBy(cb.asc(r.get(Salary_.id)));
+        return findForUpdateSkipLocked(q, limit);
+    }
+
+    public PageWithTotal<Salary> findPage(Integer offset, int limit) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        q.orderBy(cb.asc(r.get(Salary_.id)));
+        return findPage(q, offset, limit);
+    }
+
+    public PageWithTotal<LocalDate> findDistinctDatesPage(Integer offset, int limit) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<LocalDate> q = cb.createQuery(LocalDate.class);
+        Root<Salary> r = q.from(Salary.class);
+        q.select(r.get(Salary_.date)).distinct(true);
+        q.orderBy(cb.asc(r.get(Salary_.date)));
+        return findPage(q, offset, limit);
+    }
+
+    public Slice<Salary> findSlice(Integer offset, int limit) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        q.orderBy(cb.asc(r.get(Salary_.id)));
+        return findSlice(q, offset, limit);
+    }
+
+    public KeysetPage<Salary> findPageOrderedByDate(List<?> lastSeenKey, int limit) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        q.from(Salary.class);
+        return findKeysetPage(q, List.of(Order.asc(Salary_.date), Order.asc(Salary_.id)), lastSeenKey, limit);
+    }
+
+    public Stream<Salary> streamAll(int fetchSize, int evictEvery) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        q.orderBy(cb.asc(r.get(Salary_.id)));
+        return stream(q, fetchSize, evictEvery);
+    }
+
     public List<Integer> findDays(long employeeId) {
         CriteriaBuilder cb = this.cb();
         CriteriaQuery<Integer> q = cb.createQuery(Integer.class);
@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2023 Brinvex (dev1@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package test.com.brinvex.persistence.dao;
+
+import com.brinvex.persistence.api.AbstractStatelessEntityDao;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.StatelessSession;
+import test.com.brinvex.persistence.dm.Employee;
+import test.com.brinvex.persistence.dm.Employee_;
+import test.com.brinvex.persistence.dm.Salary;
+import test.com.brinvex.persistence.dm.Salary_;
+
+import java.util.List;
+
+public class SalaryStatelessDao extends AbstractStatelessEntityDao<Salary, Long> {
+
+    private final StatelessSession session;
+
+    public SalaryStatelessDao(StatelessSession session) {
+        super(Salary.class, Long.class);
+        this.session = session;
+    }
+
+    @Override
+    protected StatelessSession statelessSession() {
+        return session;
+    }
+
+    public List<Salary> findByEmployeeId(long employeeId) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        fetchJoin(r, Salary_.employee);
+        q.where(cb.equal(r.get(Salary_.employee).get(Employee_.id), employeeId));
+        q.orderBy(cb.asc(r.get(Salary_.date)));
+        return find(q);
+    }
+
+    public Employee fetchEmployee(Salary salary) {
+        fetch(salary.getEmployee());
+        return salary.getEmployee();
+    }
+}
@@ -22,6 +22,8 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -29,6 +31,7 @@ import java.util.StringJoiner;
 
 @SuppressWarnings("UnusedReturnValue")
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"employee_id", "date"}))
 public class Salary {
 
     @Id